@@ -0,0 +1,93 @@
+package org.avidj.threst.benchmarks;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.threst.ConcurrentTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time from starting a test until it fails with a deadlock or with starving threads. Every
+ * invocation leaves its sessions wedged, they are daemon threads and are gone with the fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DetectionBenchmark {
+  @Param({ "2", "4", "8" })
+  public int threads;
+
+  /**
+   * Each session locks its own monitor and then the monitor of the next session, like in
+   * {@code MonitorDeadlockTest}, but all sessions hold their first monitor before any of them
+   * proceeds, so that the cycle forms in every run.
+   */
+  @Benchmark
+  public AssertionError deadlock() {
+    final Object[] monitors = new Object[threads];
+    for ( int i = 0; i < threads; i++ ) {
+      monitors[i] = new Object();
+    }
+    return expectFailure(Sessions.sessions(threads, (i) -> (t) -> {
+      synchronized ( monitors[i] ) {
+        t.waitFor(1);
+        synchronized ( monitors[( i + 1 ) % threads] ) {
+          t.waitFor(2);
+        }
+      }
+    }));
+  }
+
+  /**
+   * Each session waits for a signal that never comes.
+   */
+  @Benchmark
+  public AssertionError starvation() {
+    return expectFailure(Sessions.sessions(threads, (i) -> (t) -> {
+      final Object signal = new Object();
+      synchronized ( signal ) {
+        signal.wait();
+      }
+    }));
+  }
+
+  private static AssertionError expectFailure(ConcurrentTest test) {
+    try {
+      test.assertSuccess();
+    } catch ( AssertionError e ) {
+      return e;
+    }
+    throw new IllegalStateException("test did not fail");
+  }
+}
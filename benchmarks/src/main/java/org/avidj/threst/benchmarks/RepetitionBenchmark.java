@@ -0,0 +1,70 @@
+package org.avidj.threst.benchmarks;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.threst.RunHarness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repetitions per second of sessions executing empty blocks, that is, the overhead of starting,
+ * observing and resetting a run. Run with {@code -prof gc} for the allocations per repetition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepetitionBenchmark {
+  @Param({ "1", "2", "4", "8", "32" })
+  public int threads;
+
+  private RunHarness harness;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    harness = new RunHarness(Sessions.sessions(threads, (i) -> (t) -> { }));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    harness.close();
+  }
+
+  @Benchmark
+  public int emptyBlocks() {
+    return harness.runOnce();
+  }
+}
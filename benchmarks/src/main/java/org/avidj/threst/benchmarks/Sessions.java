@@ -0,0 +1,52 @@
+package org.avidj.threst.benchmarks;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+
+import org.avidj.threst.ConcurrentTest;
+import org.avidj.threst.ConcurrentTest.Actions;
+import org.avidj.threst.TestRun.TestThread;
+
+import java.util.function.IntFunction;
+
+/**
+ * Creates the tests of the benchmarks. The benchmarks only use the public API, single runs are 
+ * executed by a {@link org.avidj.threst.RunHarness}.
+ */
+final class Sessions {
+  private Sessions() {
+  }
+
+  /**
+   * @param sessions the number of test threads
+   * @param block creates the block executed by the session with the given index
+   * @return a test of the given sessions
+   */
+  static ConcurrentTest sessions(int sessions, IntFunction<Actions> block) {
+    TestThread[] more = new TestThread[sessions - 1];
+    for ( int i = 0; i < more.length; i++ ) {
+      more[i] = thread().exec(block.apply(i + 1));
+    }
+    return threads(thread().exec(block.apply(0)), more);
+  }
+}
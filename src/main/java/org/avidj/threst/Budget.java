@@ -0,0 +1,64 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The repetitions a concurrent test may execute, bounded by a count, a wall-clock duration, or
+ * both. The instances of a test claim repetitions from a common budget until it is used up.
+ */
+class Budget {
+  private final int repetitions;
+  private final long durationNanos;
+  private final AtomicInteger claimed = new AtomicInteger();
+  private long deadline;
+
+  /**
+   * @param repetitions the maximum number of repetitions
+   * @param durationNanos the maximum duration, or 0 if the duration is not bounded
+   */
+  Budget(int repetitions, long durationNanos) {
+    this.repetitions = repetitions;
+    this.durationNanos = durationNanos;
+  }
+
+  /**
+   * Starts the clock. Call before any instance claims a repetition.
+   */
+  void start() {
+    deadline = System.nanoTime() + durationNanos;
+  }
+
+  /**
+   * Claims the next repetition.
+   *
+   * @return the index of the repetition claimed, or -1 if the budget is used up
+   */
+  int claim() {
+    if ( durationNanos > 0 && System.nanoTime() - deadline >= 0 ) {
+      return -1;
+    }
+    // claims beyond the count are never undone, the counter only grows by one per failing claim
+    final int repetition = claimed.getAndIncrement();
+    return ( repetition < repetitions ) ? repetition : -1;
+  }
+}
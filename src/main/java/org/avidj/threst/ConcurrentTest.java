@@ -19,18 +19,25 @@ package org.avidj.threst;
  * limitations under the License.
  * #L%
  */
-import org.junit.jupiter.api.Assertions;
+import com.google.common.base.Preconditions;
 
 import org.avidj.threst.TestRun.TestThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 /**
  * Utility for executing concurrent test with the purpose to reveal concurrency
@@ -43,25 +50,64 @@ import java.util.concurrent.ThreadFactory;
 public class ConcurrentTest {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentTest.class);
-  final ExecutorService pool
-          = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
-            public Thread newThread(Runnable runnable) {
-              Thread thread = new Thread(runnable);
-              threads.add(thread);
-              return thread;
-            }
-          });
   final List<TestThread> testThreads;
-  final List<Thread> threads;
-  private int repeat = 1;
+  // -1 if not given, then a single repetition unless a duration is given
+  private int repeat = -1;
+  // the repetitions needed for the confidence given to until(), -1 if not given
+  private int confidentRepeat = -1;
+  private long durationNanos = 0;
+  private long timeoutNanos = 0;
+  final StarvationThreshold starvation = new StarvationThreshold();
+  private boolean useJfr = false;
+  private boolean profileContention = false;
+  // profiles the contention of the current assertion, null unless profiling
+  ContentionProfiler profiler;
+  private ContentionReport contentionReport;
+  private long stressOperations = 0;
+  private long stressNanos = 0;
+  // records the operations of the current assertion, null unless in stress mode
+  StressRecorder stress;
+  private StressReport stressReport;
+  // the model the recorded operations must be linearizable to, null if not checked
+  private SequentialSpec<?> sequentialSpec;
+  // the number of events kept per session, 0 if runs are not traced
+  private int traceCapacity = 256;
+  private Path traceDirectory = Paths.get(System.getProperty("threst.traceDirectory", 
+      Paths.get(System.getProperty("java.io.tmpdir"), "threst").toString()));
+  // the Flight Recorder stream of the current or last assertion, null if not used
+  JfrObserver jfr;
+  private boolean startBarrier = false;
+  // the probability of a delay at each point, 0 if no noise is injected
+  private double noiseIntensity = 0;
+  private long noiseSeed;
+  private int parallelism = 1;
+  private Supplier<?> stateFactory;
+  private boolean virtualThreads = false;
   private int nextIndex = 0;
   final int sessionCount;
   private TestRun lastRun;
+  private long observerPollCount;
+  private long observerPollCpuNanos;
+  private RunStatistics statistics;
+  private ObjectName mxBeanName;
+  // the strategy of a controlled schedule, null if the schedule is not controlled
+  private Supplier<? extends SchedulingStrategy> strategyFactory;
+  private long seed;
+  private int[] replayChoices;
+  private boolean exploring = false;
+  // the number of runs without a new interleaving to stop after, 0 to only track, -1 if disabled
+  private int saturationRuns = -1;
+  // counts the interleavings of the current assertion, null if coverage is not tracked
+  CoverageTracker coverageTracker;
+  private Coverage coverage;
+  private long explored;
+  private boolean explorationComplete;
+  final TestMetrics metrics;
 
   private ConcurrentTest(int sessionCount) {
     this.sessionCount = sessionCount;
     testThreads = new ArrayList<>(sessionCount);
-    threads = new ArrayList<>(sessionCount);
+    metrics = new TestMetrics(sessionCount);
   }
 
   /**
@@ -90,7 +136,8 @@ public class ConcurrentTest {
   /**
    * The number of repetitions of the test. This must be sufficiently high for
    * finding concurrency bugs. The default of 1 is only sufficient for actually
-   * sequential tests.
+   * sequential tests. Together with {@link #duration(Duration)} or 
+   * {@link #until(double, double)}, the test stops at whichever limit is reached first.
    *
    * @param repeat the number of repetitions to do
    * @return this
@@ -100,6 +147,576 @@ public class ConcurrentTest {
     return this;
   }
 
+  /**
+   * Keeps executing repetitions until the given duration elapsed. This gives a scenario a fixed
+   * wall-clock budget and executes as many repetitions as fit into it. If a number of repetitions
+   * is given as well, the test stops at whichever limit is reached first. The repetition running
+   * when the duration elapses is completed.
+   *
+   * @param duration the wall-clock time to spend on repetitions
+   * @return this
+   * @throws IllegalArgumentException if the duration is not positive
+   */
+  public ConcurrentTest duration(Duration duration) {
+    Preconditions.checkArgument(
+        !duration.isNegative() && !duration.isZero(), "duration must be > 0");
+    this.durationNanos = duration.toNanos();
+    return this;
+  }
+
+  /**
+   * Fails a run that takes longer than the given time, e.g. because a session waits for a signal
+   * that never comes. The sessions still running are interrupted, the workers of sessions that 
+   * do not end are abandoned and replaced. Without a timeout, a run only fails when a deadlock or
+   * starvation is detected.
+   *
+   * @param timeout the maximum wall-clock time of a single run
+   * @return this
+   * @throws IllegalArgumentException if the timeout is not positive
+   */
+  public ConcurrentTest timeout(Duration timeout) {
+    Preconditions.checkArgument(
+        !timeout.isNegative() && !timeout.isZero(), "timeout must be > 0");
+    this.timeoutNanos = timeout.toNanos();
+    return this;
+  }
+
+  /**
+   * Considers a session starving once it waited for a signal for longer than the given time while
+   * no session was running. By default, the threshold adapts to the test: it starts at 500 ms and
+   * becomes 10 times the longest wait for a signal seen in healthy runs, between 50 ms and 2 s.
+   * Timed waits end by themselves and are never considered starving.
+   *
+   * @param threshold the time a session may wait for a signal
+   * @return this
+   * @throws IllegalArgumentException if the threshold is not positive
+   */
+  public ConcurrentTest starvationThreshold(Duration threshold) {
+    Preconditions.checkArgument(
+        !threshold.isNegative() && !threshold.isZero(), "threshold must be > 0");
+    starvation.fix(threshold.toNanos());
+    return this;
+  }
+
+  /**
+   * Collects contention evidence from the code under test through an in-process Flight Recorder
+   * stream instead of sampling thread infos whenever the observer polls. Every contended monitor
+   * enter, monitor wait, and park of a session is seen with its duration, including short 
+   * episodes between polls, see {@link JfrObserver}. Ticks, deadlocks and starvation are still
+   * decided by polling, so the stream adds to the cost of a test. Starting it takes a moment, so
+   * this pays off for longer tests.
+   *
+   * @return this
+   * @throws IllegalStateException if the Flight Recorder is not available in this JVM
+   */
+  public ConcurrentTest jfr() {
+    Preconditions.checkState(JfrObserver.isAvailable(), "Flight Recorder not available");
+    this.useJfr = true;
+    return this;
+  }
+
+  /**
+   * Profiles the contention of the sessions on the monitors and synchronizers of the code under
+   * test. Thread contention monitoring is turned on during the assertion and the workers are 
+   * sampled every millisecond, the blocked and waited counts and times are attributed to the 
+   * class and the acquisition site of the locks the sessions were seen on, so that the fresh
+   * locks of every run add up, together with the blocks waiting for and owning them. The 
+   * ranked report is logged at the end of the assertion and available from 
+   * {@link #contentionReport()}. Virtual threads cannot be profiled.
+   *
+   * @return this
+   */
+  public ConcurrentTest profileContention() {
+    this.profileContention = true;
+    return this;
+  }
+
+  /**
+   * @return the contention report of the last assertion, or {@code null} if contention was not
+   *     profiled
+   */
+  public ContentionReport contentionReport() {
+    return contentionReport;
+  }
+
+  /**
+   * Turns every run into a stress test: each session executes its blocks over and over for the
+   * given time, every execution of all blocks of a session is an operation. The latencies of the
+   * operations are recorded per session, the throughput and latency percentiles are logged at 
+   * the end of the assertion and available from {@link #stressReport()}. Ticks only order the 
+   * first operation of each session. Stress mode cannot be combined with a controlled schedule.
+   *
+   * @param duration the time each session executes operations in every run
+   * @return this
+   * @throws IllegalArgumentException if the duration is not positive
+   */
+  public ConcurrentTest stress(Duration duration) {
+    Preconditions.checkArgument(
+        !duration.isNegative() && !duration.isZero(), "duration must be > 0");
+    this.stressNanos = duration.toNanos();
+    return this;
+  }
+
+  /**
+   * Like {@link #stress(Duration)}, but each session executes the given number of operations in
+   * every run. If a duration is given as well, a session stops at whichever limit is reached 
+   * first.
+   *
+   * @param operations the number of operations of each session in every run
+   * @return this
+   * @throws IllegalArgumentException if the number of operations is not positive
+   */
+  public ConcurrentTest stress(long operations) {
+    Preconditions.checkArgument(operations > 0, "operations must be > 0");
+    this.stressOperations = operations;
+    return this;
+  }
+
+  /**
+   * @return the throughput and latencies of the last assertion, or {@code null} if it was not 
+   *     in stress mode
+   */
+  public StressReport stressReport() {
+    return stressReport;
+  }
+
+  /**
+   * Checks that the operations recorded by the sessions with {@link TestThread#record} are 
+   * linearizable after every run: there must be a sequential order of them that respects their
+   * real-time order and in which every operation returns its recorded result according to the 
+   * given model. A run with a history that is not linearizable fails. Operations on different 
+   * keys of the model are checked independently, which keeps long histories, e.g. of stress 
+   * runs, feasible to check.
+   *
+   * @param spec the sequential model of the object under test
+   * @return this
+   */
+  public ConcurrentTest linearizable(SequentialSpec<?> spec) {
+    this.sequentialSpec = Preconditions.checkNotNull(spec);
+    return this;
+  }
+
+  SequentialSpec<?> sequentialSpec() {
+    return sequentialSpec;
+  }
+
+  /**
+   * Sets the number of events kept per session in the trace of a run. Runs are traced by default:
+   * the sessions and the observer record block starts and ends, tick waits and advances, and the
+   * failures detected into preallocated ring buffers. The trace of the first failing run is
+   * dumped into a file named in the failure message, see {@link TraceReader}.
+   *
+   * @param eventsPerSession the number of latest events kept per session, 0 to not trace runs
+   * @return this
+   * @throws IllegalArgumentException if the number of events is negative
+   */
+  public ConcurrentTest trace(int eventsPerSession) {
+    Preconditions.checkArgument(eventsPerSession >= 0, "events must be >= 0");
+    this.traceCapacity = eventsPerSession;
+    return this;
+  }
+
+  /**
+   * Only the latest traces are kept in the directory, older ones are deleted when a new one is
+   * dumped, see {@link TraceRecorder#MAX_DUMPS}.
+   *
+   * @param directory the directory to dump traces of failed runs into, by default the value of 
+   *     the system property {@code threst.traceDirectory} or the directory {@code threst} in the
+   *     temporary directory
+   * @return this
+   */
+  public ConcurrentTest traceDirectory(Path directory) {
+    this.traceDirectory = Preconditions.checkNotNull(directory);
+    return this;
+  }
+
+  int traceCapacity() {
+    return traceCapacity;
+  }
+
+  Path traceDirectory() {
+    return traceDirectory;
+  }
+
+  /**
+   * @return the timeout of a single run in nanoseconds, 0 if runs do not time out
+   */
+  long timeoutNanos() {
+    return timeoutNanos;
+  }
+
+  /**
+   * Executes enough repetitions to reveal a bug with the given confidence, assuming the bug
+   * manifests in a single repetition with the given probability. That is, the number of
+   * repetitions {@code n} is the smallest one with {@code 1 - (1 - p)^n >= confidence}. For
+   * example, a bug manifesting in 1 of 1000 runs is revealed with a confidence of 99% by 4603
+   * repetitions. Combine with {@link #duration(Duration)} or {@link #repeat(int)} to bound the 
+   * time spent, the test stops at whichever limit is reached first.
+   *
+   * @param confidence the probability to reveal the bug, between 0 and 1 exclusive
+   * @param failureProbability the probability of the bug to manifest in a single repetition,
+   *     between 0 and 1 exclusive
+   * @return this
+   * @throws IllegalArgumentException if a probability is out of range
+   */
+  public ConcurrentTest until(double confidence, double failureProbability) {
+    Preconditions.checkArgument(confidence > 0 && confidence < 1, "confidence must be in (0, 1)");
+    Preconditions.checkArgument(failureProbability > 0 && failureProbability < 1, 
+        "failure probability must be in (0, 1)");
+    final double n = Math.ceil(Math.log1p(-confidence) / Math.log1p(-failureProbability));
+    this.confidentRepeat = (int) Math.min(Integer.MAX_VALUE, n);
+    return this;
+  }
+
+  int repetitions() {
+    if ( replayChoices != null ) {
+      return 1;
+    }
+    if ( repeat >= 0 && confidentRepeat >= 0 ) {
+      return Math.min(repeat, confidentRepeat);
+    } else if ( repeat >= 0 || confidentRepeat >= 0 ) {
+      return Math.max(repeat, confidentRepeat);
+    }
+    return ( durationNanos > 0 || exploring || saturationRuns > 0 ) ? Integer.MAX_VALUE : 1;
+  }
+
+  /**
+   * The number of isolated instances of the test that execute repetitions in parallel. Each
+   * instance has its own worker threads and, if a state factory is given, its own state. Instances
+   * claim repetitions from the common budget until all repetitions are done or a run fails. The
+   * default of 1 executes all repetitions one after another.
+   *
+   * <p>Test blocks of parallel instances must not share mutable state, use
+   * {@link #instances(Supplier)} instead of capturing state in the blocks.
+   *
+   * @param parallelism the number of instances running repetitions at the same time
+   * @return this
+   * @throws IllegalArgumentException if parallelism is not positive
+   */
+  public ConcurrentTest parallelism(int parallelism) {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be > 0");
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * A factory for the state the test threads operate on. A fresh state is created for every run,
+   * test blocks obtain it using {@link TestThread#state()}. This keeps runs of parallel instances
+   * isolated from each other.
+   *
+   * @param stateFactory creates the state of a single run
+   * @return this
+   */
+  public ConcurrentTest instances(Supplier<?> stateFactory) {
+    this.stateFactory = Preconditions.checkNotNull(stateFactory);
+    return this;
+  }
+
+  /**
+   * Executes every test thread on a virtual thread rather than on a platform thread. This allows
+   * for scenarios with many thousands of concurrent sessions at a small memory cost per session.
+   *
+   * <p>The {@link java.lang.management.ThreadMXBean} does not report lock owners of virtual
+   * threads, so deadlocks among virtual threads surface as starving threads. Also, a virtual
+   * thread blocking on a monitor or in {@link Object#wait()} pins its carrier thread, so code
+   * under test relying on monitors limits how many sessions actually run concurrently.
+   *
+   * @return this
+   */
+  public ConcurrentTest virtualThreads() {
+    this.virtualThreads = true;
+    return this;
+  }
+
+  boolean usesVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Holds back the sessions of every run at a barrier until all of them are awake, and releases
+   * them within nanoseconds of each other. Without the barrier, sessions start as their workers
+   * are woken one after the other, and short blocks may run almost sequentially. The skew between
+   * the first and the last session to start is reported in the {@link #statistics()} and the
+   * {@link #metrics()}.
+   *
+   * @return this
+   */
+  public ConcurrentTest startBarrier() {
+    this.startBarrier = true;
+    return this;
+  }
+
+  boolean usesStartBarrier() {
+    return startBarrier;
+  }
+
+  /**
+   * Injects random delays into the sessions with a seed derived from the current time, see 
+   * {@link #noise(double, long)}.
+   *
+   * @param intensity the probability of a delay at each point, greater than 0 and at most 1
+   * @return this
+   * @throws IllegalArgumentException if the intensity is out of range
+   */
+  public ConcurrentTest noise(double intensity) {
+    return noise(intensity, System.nanoTime());
+  }
+
+  /**
+   * Injects random delays into the sessions to widen race windows: yields, spins of up to 20 us,
+   * and parks of up to 100 us. At every block, after every tick, and at the scheduling points
+   * inside code instrumented by {@code org.avidj.threst.agent}, a session is delayed with the 
+   * given probability. The delays of every repetition are derived from the seed and the index of
+   * the repetition, a failure reports them. Noise is not injected under a controlled schedule.
+   *
+   * @param intensity the probability of a delay at each point, greater than 0 and at most 1
+   * @param seed the seed of the delays
+   * @return this
+   * @throws IllegalArgumentException if the intensity is out of range
+   */
+  public ConcurrentTest noise(double intensity, long seed) {
+    Preconditions.checkArgument(intensity > 0 && intensity <= 1, "intensity must be in (0, 1]");
+    this.noiseIntensity = intensity;
+    this.noiseSeed = seed;
+    return this;
+  }
+
+  /**
+   * @return the probability of a delay at each point, 0 if no noise is injected
+   */
+  double noiseIntensity() {
+    return controlled() ? 0 : noiseIntensity;
+  }
+
+  long noiseSeed() {
+    return noiseSeed;
+  }
+
+  /**
+   * Runs the sessions under a controlled schedule with random choices derived from the given
+   * seed. Under a controlled schedule, only one session runs at a time and the schedule switches
+   * between sessions at scheduling points only: at the start of each block, at each tick waited
+   * for, and when a session ends. The schedule of a failing run is reported in the failure, so
+   * that it can be reproduced in a single run using {@link #replay(String)}.
+   *
+   * <p>A session blocking inside the code under test, e.g. on a lock held by another session, is
+   * detected by the observer after a few milliseconds and the schedule moves on without it. Such
+   * timing-dependent decisions can make a replay diverge from the recorded schedule.
+   *
+   * @param seed the seed of the schedules, each repetition derives its own seed from it
+   * @return this
+   */
+  public ConcurrentTest seed(long seed) {
+    this.seed = seed;
+    if ( strategyFactory == null ) {
+      strategyFactory = RandomStrategy::new;
+    }
+    return this;
+  }
+
+  /**
+   * Runs the sessions under a controlled schedule chosen by the given strategy, see
+   * {@link #seed(long)}. Unless a seed is given, the seed is derived from the current time.
+   *
+   * @param strategyFactory creates a strategy for every instance of the test
+   * @return this
+   */
+  public ConcurrentTest strategy(Supplier<? extends SchedulingStrategy> strategyFactory) {
+    if ( this.strategyFactory == null ) {
+      this.seed = System.nanoTime();
+    }
+    this.strategyFactory = Preconditions.checkNotNull(strategyFactory);
+    return this;
+  }
+
+  /**
+   * Runs the sessions under a controlled schedule chosen by probabilistic concurrency testing, see
+   * {@link PctStrategy}. With the instrumentation in {@code org.avidj.threst.agent}, sessions are
+   * also switched inside the code under test.
+   *
+   * @param depth the depth of the bugs to find, at least 1
+   * @return this
+   * @throws IllegalArgumentException if the depth is not positive
+   */
+  public ConcurrentTest pct(int depth) {
+    Preconditions.checkArgument(depth > 0, "depth must be > 0");
+    return strategy(() -> new PctStrategy(depth));
+  }
+
+  /**
+   * Fingerprints the interleaving of every run and counts the distinct interleavings, see 
+   * {@link Coverage}. The fingerprint takes the order in which sessions complete blocks and 
+   * arrive at ticks into account, and the sessions found blocked on locks held by other sessions.
+   *
+   * @return this
+   */
+  public ConcurrentTest trackCoverage() {
+    saturationRuns = Math.max(0, saturationRuns);
+    return this;
+  }
+
+  /**
+   * Tracks the coverage of interleavings like {@link #trackCoverage()} and stops the test once
+   * the given number of consecutive runs did not exercise a new interleaving. Unless a number of 
+   * repetitions or a duration is given, the test runs until then.
+   *
+   * @param runs the number of consecutive runs without a new interleaving to stop after
+   * @return this
+   * @throws IllegalArgumentException if runs is not positive
+   */
+  public ConcurrentTest saturate(int runs) {
+    Preconditions.checkArgument(runs > 0, "runs must be > 0");
+    saturationRuns = runs;
+    return this;
+  }
+
+  boolean tracksCoverage() {
+    return saturationRuns >= 0;
+  }
+
+  /**
+   * @return the coverage of interleavings of the last assertion, or {@code null} if coverage 
+   *     was not tracked
+   */
+  public Coverage coverage() {
+    return coverage;
+  }
+
+  /**
+   * Explores the schedules of the test systematically with at most 2 preemptions per schedule,
+   * see {@link #explore(int)}.
+   *
+   * @return this
+   */
+  public ConcurrentTest explore() {
+    return explore(2);
+  }
+
+  /**
+   * Explores the schedules of the test systematically instead of sampling them. Every run 
+   * follows a new schedule until all schedules with at most the given number of preemptions were
+   * run, or a run fails. Schedules differing only in the order of independent steps are run only
+   * once, see {@link Explorer}. Steps are independent if they access different objects at 
+   * instrumented scheduling points, without the instrumentation in 
+   * {@code org.avidj.threst.agent} all interleavings of blocks are run.
+   *
+   * <p>All runs take place in a single instance. Unless a number of repetitions or a duration is
+   * given, the exploration is only limited by the preemption bound, use
+   * {@link #explorationComplete()} to find out whether it completed within the limits. As every
+   * run must start from the same state, the blocks should obtain their state from 
+   * {@link #instances(Supplier)}.
+   *
+   * @param preemptionBound the maximum number of switches away from a session that could have 
+   *     continued, per schedule
+   * @return this
+   * @throws IllegalArgumentException if the bound is negative or there are more than 64 sessions
+   */
+  public ConcurrentTest explore(int preemptionBound) {
+    Preconditions.checkArgument(preemptionBound >= 0, "preemption bound must be >= 0");
+    Preconditions.checkArgument(sessionCount <= Long.SIZE, "at most %s sessions", Long.SIZE);
+    this.exploring = true;
+    return strategy(() -> new Explorer(preemptionBound));
+  }
+
+  /**
+   * @return true, iff the last exploration ran all schedules within the preemption bound, see
+   *     {@link #explore(int)}
+   */
+  public boolean explorationComplete() {
+    return explorationComplete;
+  }
+
+  /**
+   * @return the number of schedules run by the last exploration, see {@link #explore(int)}
+   */
+  public long exploredSchedules() {
+    return explored;
+  }
+
+  /**
+   * Replays the schedule of a failing run in a single repetition. The schedule is taken from the
+   * message of the failure, replaying it makes the same scheduling decisions as the failing run.
+   *
+   * @param schedule the schedule of a failing run
+   * @return this
+   * @throws IllegalArgumentException if the schedule is malformed
+   */
+  public ConcurrentTest replay(String schedule) {
+    final long[] parsed = CooperativeScheduler.parse(schedule);
+    final int[] choices = new int[parsed.length - 1];
+    for ( int i = 0; i < choices.length; i++ ) {
+      Preconditions.checkArgument(parsed[i + 1] >= 0 && parsed[i + 1] < sessionCount, 
+          "no such session in schedule: %s", parsed[i + 1]);
+      choices[i] = (int) parsed[i + 1];
+    }
+    if ( strategyFactory == null ) {
+      strategyFactory = RandomStrategy::new;
+    }
+    this.seed = parsed[0];
+    this.replayChoices = choices;
+    return this;
+  }
+
+  boolean controlled() {
+    return strategyFactory != null;
+  }
+
+  SchedulingStrategy newStrategy() {
+    return strategyFactory.get();
+  }
+
+  int[] replayChoices() {
+    return replayChoices;
+  }
+
+  /**
+   * @param repetition the index of a repetition
+   * @return the seed of the controlled schedule of the given repetition
+   */
+  long runSeed(int repetition) {
+    if ( replayChoices != null ) {
+      return seed;
+    }
+    // spread the seeds of consecutive repetitions like SplittableRandom does
+    long z = seed + ( repetition + 1 ) * 0x9E3779B97F4A7C15L;
+    z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+    z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+    return z ^ ( z >>> 31 );
+  }
+
+  /**
+   * Registers the live metrics of this test with the platform MBean server while an assertion
+   * is running, under the name {@code org.avidj.threst:type=ConcurrentTest,name=<name>}.
+   *
+   * @param name the name of the test in the object name
+   * @return this
+   * @throws IllegalArgumentException if the name is not valid in an object name
+   */
+  public ConcurrentTest mxBean(String name) {
+    try {
+      this.mxBeanName = new ObjectName(
+          "org.avidj.threst:type=ConcurrentTest,name=" + ObjectName.quote(name));
+    } catch ( MalformedObjectNameException e ) {
+      throw new IllegalArgumentException("invalid name: " + name, e);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a listener receiving the events of this test as they happen.
+   *
+   * @param listener the listener to add
+   * @return this
+   */
+  public ConcurrentTest listener(ConcurrentTestListener listener) {
+    metrics.addListener(Preconditions.checkNotNull(listener));
+    return this;
+  }
+
+  Object newState() {
+    return ( stateFactory == null ) ? null : stateFactory.get();
+  }
+
   /**
    * @return true iff all sessions were successful
    */
@@ -115,26 +732,152 @@ public class ConcurrentTest {
    * @return this
    */
   public ConcurrentTest assertSuccessCount(int count) {
+    final boolean stressing = stressOperations > 0 || stressNanos > 0;
+    Preconditions.checkState(!stressing || !controlled(), 
+        "stress mode cannot be combined with a controlled schedule");
     // Repetitions increase the probability to find erroneous interleavings of operations.
-    for (int i = 0; i < repeat; i++) {
-      LOG.trace("run {}", i + 1);
-      lastRun = new TestRun(this);
-      lastRun.runOnce();
-      if (lastRun.hasAssertionError()) {
-        throw lastRun.getAssertionError();
+    final Verdict verdict = new Verdict(count);
+    final Budget budget = new Budget(repetitions(), durationNanos);
+    final int instanceCount = ( replayChoices != null || exploring ) 
+        ? 1 : Math.max(1, Math.min(parallelism, repetitions()));
+    final ObserverService observerService = new ObserverService(instanceCount);
+    final List<TestInstance> instances = new ArrayList<>(instanceCount);
+    final List<Thread> drivers = new ArrayList<>(instanceCount - 1);
+    long elapsed = 0;
+    coverageTracker = tracksCoverage() ? new CoverageTracker(saturationRuns) : null;
+    metrics.reset(observerService);
+    starvation.reset();
+    stress = stressing ? new StressRecorder(sessionCount, stressOperations, stressNanos) : null;
+    profiler = profileContention 
+        ? new ContentionProfiler(ManagementFactory.getThreadMXBean()) : null;
+    registerMxBean();
+    try {
+      for ( int i = 0; i < instanceCount; i++ ) {
+        instances.add(new TestInstance(this, budget, verdict, observerService));
+      }
+      if ( useJfr ) {
+        startJfr(instances);
+      }
+      observerService.start();
+      budget.start();
+      final long start = System.nanoTime();
+      for ( int i = 1; i < instanceCount; i++ ) {
+        Thread driver = new Thread(instances.get(i), "threst-instance-" + i);
+        drivers.add(driver);
+        driver.start();
       }
-      assertSuccessCount(lastRun, count);
+      // the calling thread drives the first instance
+      instances.get(0).run();
+      for ( Thread driver : drivers ) {
+        driver.join();
+      }
+      elapsed = System.nanoTime() - start;
+      if ( exploring ) {
+        explored(instances.get(0), verdict, elapsed);
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } finally {
+      shutdown(instances, observerService);
+      stopJfr();
+      unregisterMxBean();
+    }
+    observerPollCount = observerService.pollCount();
+    observerPollCpuNanos = observerService.pollCpuNanos();
+    statistics = statistics(instances, elapsed, observerService, metrics);
+    LOG.info("{}", statistics);
+    if ( coverageTracker != null ) {
+      coverage = coverageTracker.coverage();
+      LOG.info("{}", coverage);
+    }
+    if ( profiler != null ) {
+      contentionReport = profiler.finish();
+      LOG.info("{}", contentionReport);
+    }
+    if ( stress != null ) {
+      stressReport = stress.report(elapsed);
+      LOG.info("{}", stressReport);
     }
+    metrics.testFinished(statistics);
+    lastRun = verdict.lastRun();
+    verdict.assertSuccess();
     return this;
   }
 
-  private void assertSuccessCount(TestRun run, int count) {
-    if (run.successCount() != count) {
-      List<Throwable> throwables = run.getThrowables();
-      for (int i = 0, n = throwables.size(); i < n; i++) {
-        LOG.error("Error occurred in thread " + i + ": ", throwables.get(i));
+  private void explored(TestInstance instance, Verdict verdict, long elapsedNanos) {
+    final Explorer explorer = (Explorer) instance.run.scheduler.strategy();
+    explored = explorer.schedules();
+    explorationComplete = !verdict.failed() && instance.exhausted();
+    LOG.info("explored {} schedules ({}) in {} ms, {} schedules/s", explored, 
+        explorationComplete ? "complete" : "incomplete", elapsedNanos / 1_000_000,
+        String.format("%.1f", explored * 1e9 / Math.max(1, elapsedNanos)));
+  }
+
+  private void startJfr(List<TestInstance> instances) {
+    jfr = new JfrObserver(this);
+    for ( TestInstance instance : instances ) {
+      final Thread[] workers = instance.run.workers;
+      for ( int i = 0; i < workers.length; i++ ) {
+        jfr.register(workers[i], i);
       }
-      Assertions.fail(String.format("success count deviates, expected %d but got %d", count, run.successCount()));
+    }
+    jfr.start();
+  }
+
+  private void stopJfr() {
+    if ( jfr != null ) {
+      jfr.stop();
+      jfr.close();
+      LOG.info("{}", jfr);
+    }
+  }
+
+  private static RunStatistics statistics(List<TestInstance> instances, long elapsedNanos, 
+      ObserverService observerService, TestMetrics metrics) {
+    long repetitions = 0;
+    long setupNanos = 0;
+    long runNanos = 0;
+    for ( TestInstance instance : instances ) {
+      repetitions += instance.run.runCount();
+      setupNanos += instance.run.setupNanos();
+      runNanos += instance.run.runNanos();
+    }
+    return new RunStatistics(repetitions, elapsedNanos, setupNanos, runNanos, 
+        observerService.observeNanos(), metrics.startSkewP50Nanos());
+  }
+
+  private void registerMxBean() {
+    if ( mxBeanName == null ) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, mxBeanName);
+    } catch ( JMException e ) {
+      throw new IllegalStateException("cannot register " + mxBeanName, e);
+    }
+  }
+
+  private void unregisterMxBean() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if ( mxBeanName == null || !server.isRegistered(mxBeanName) ) {
+      return;
+    }
+    try {
+      server.unregisterMBean(mxBeanName);
+    } catch ( JMException e ) {
+      LOG.warn("cannot unregister {}", mxBeanName, e);
+    }
+  }
+
+  // Releases the threads of the test, so that nothing keeps running after the test.
+  private static void shutdown(List<TestInstance> instances, ObserverService observerService) {
+    try {
+      for ( TestInstance instance : instances ) {
+        instance.shutdown();
+      }
+      observerService.close();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -145,9 +888,16 @@ public class ConcurrentTest {
    */
   private ConcurrentTest run() {
     // Repetitions increase the probability to find erroneous interleavings of operations.
-    for (int i = 0; i < repeat; i++) {
-      TestRun run = new TestRun(this);
-      run.runOnce();
+    final ObserverService observerService = new ObserverService(1);
+    final TestInstance instance = new TestInstance(
+        this, new Budget(repetitions(), 0), new Verdict(sessionCount), observerService);
+    observerService.start();
+    try {
+      for ( int i = 0, n = repetitions(); i < n; i++ ) {
+        instance.run.runOnce();
+      }
+    } finally {
+      shutdown(Collections.singletonList(instance), observerService);
     }
     return this;
   }
@@ -162,6 +912,46 @@ public class ConcurrentTest {
     return lastRun.successCount();
   }
 
+  /**
+   * What the last assertion achieved: the repetitions executed, the repetitions per second, and
+   * the time spent in setting up, running and observing the runs.
+   *
+   * @return the statistics of the last assertion, or {@code null} if the test was not run yet
+   */
+  public RunStatistics statistics() {
+    return statistics;
+  }
+
+  /**
+   * The live metrics of this test. They are updated while an assertion is running and keep the
+   * values of the last assertion afterwards.
+   *
+   * @return the metrics of this test
+   */
+  public ConcurrentTestMXBean metrics() {
+    return metrics;
+  }
+
+  /**
+   * The number of times the observer polled the threads of the test during the last assertion.
+   * The observer only polls when sessions block or wait inside the code under test.
+   *
+   * @return the number of observer polls
+   */
+  public long observerPollCount() {
+    return observerPollCount;
+  }
+
+  /**
+   * The average CPU time the observer spent per poll during the last assertion. This is 0 if the
+   * JVM does not support measuring thread CPU time.
+   *
+   * @return the average CPU time per poll in nanoseconds
+   */
+  public long observerCpuNanosPerPoll() {
+    return ( observerPollCount == 0 ) ? 0 : observerPollCpuNanos / observerPollCount;
+  }
+
   /**
    * Returns the list of errors and exceptions thrown during the previous run of
    * the test.
@@ -0,0 +1,52 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives events of a running concurrent test, e.g. to export them to a metrics system. Events
+ * are delivered on the threads of the test as they happen, so listeners must be thread-safe and
+ * should return quickly, a slow listener slows down the test. All methods do nothing by default.
+ */
+public interface ConcurrentTestListener {
+
+  /**
+   * A repetition finished. Called on the thread driving the repetition.
+   *
+   * @param success whether the repetition succeeded as expected
+   * @param latencyNanos the time from starting the repetition until it was observed finished
+   */
+  default void runFinished(boolean success, long latencyNanos) { }
+
+  /**
+   * A tick was advanced. Called on the observer thread.
+   *
+   * @param tick the new tick
+   * @param latencyNanos the time from the last session parking on a tick until it was advanced
+   */
+  default void tickAdvanced(int tick, long latencyNanos) { }
+
+  /**
+   * An assertion finished, successfully or not. Called on the thread running the assertion.
+   *
+   * @param statistics what the assertion achieved
+   */
+  default void testFinished(RunStatistics statistics) { }
+}
@@ -0,0 +1,109 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Live metrics of a concurrent test, updated while its repetitions are running. Register a test
+ * with the platform MBean server using {@link ConcurrentTest#mxBean(String)}, or read the metrics
+ * directly from {@link ConcurrentTest#metrics()}. Latencies are given in microseconds, counts are
+ * reset at the start of every assertion.
+ */
+public interface ConcurrentTestMXBean {
+
+  /**
+   * @return the number of repetitions finished
+   */
+  long getRepetitions();
+
+  /**
+   * @return the number of repetitions in which all sessions succeeded as expected
+   */
+  long getSuccesses();
+
+  /**
+   * @return the number of failed repetitions
+   */
+  long getFailures();
+
+  /**
+   * @return the median time from starting a repetition until it was observed finished
+   */
+  long getRunLatencyP50Micros();
+
+  /**
+   * @return the 99th percentile of the time from starting a repetition until it was observed
+   *     finished
+   */
+  long getRunLatencyP99Micros();
+
+  /**
+   * @return the longest time from starting a repetition until it was observed finished
+   */
+  long getRunLatencyMaxMicros();
+
+  /**
+   * @return the median time between the first and the last session starting a repetition
+   */
+  long getStartSkewP50Nanos();
+
+  /**
+   * @return the 99th percentile of the time between the first and the last session starting a
+   *     repetition
+   */
+  long getStartSkewP99Nanos();
+
+  /**
+   * @return the number of ticks advanced
+   */
+  long getTickAdvances();
+
+  /**
+   * @return the median time from the last session parking on a tick until the tick was advanced
+   */
+  long getTickAdvanceP50Micros();
+
+  /**
+   * @return the 99th percentile of the time from the last session parking on a tick until the
+   *     tick was advanced
+   */
+  long getTickAdvanceP99Micros();
+
+  /**
+   * @return the number of times the observer polled the sessions
+   */
+  long getObserverPollCount();
+
+  /**
+   * @return the total CPU time the observer spent polling, 0 if not supported by the JVM
+   */
+  long getObserverPollCpuNanos();
+
+  /**
+   * @return per session, the number of times its threads waited, as seen by the observer
+   */
+  long[] getThreadWaitedCounts();
+
+  /**
+   * @return per session, the number of times its threads blocked on a monitor, as seen by the
+   *     observer
+   */
+  long[] getThreadBlockedCounts();
+}
@@ -0,0 +1,273 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.threst.ContentionReport.LockProfile;
+
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attributes the contention of the sessions to the monitors and synchronizers they block on or
+ * wait for, across all runs of all instances of a test. Thread contention monitoring is turned on
+ * while profiling, so that the thread infos carry blocked and waited times. The observers sample 
+ * the workers at a fixed interval and attribute the counts and times accumulated since the 
+ * previous sample to the lock a session was seen on, along with the blocks waiting for and
+ * owning the lock. Waits of the harness itself, e.g. for ticks, are left out.
+ *
+ * <p>Tests usually create fresh state for every run, so the same lock of the code under test is a
+ * new object in every run. Locks are therefore identified by their class and the site acquiring 
+ * them, the first frame of the waiting session outside the JDK. The stack is only fetched for
+ * sessions seen on a lock of the code under test.
+ *
+ * <p>All observers are stepped by the single thread of the {@link ObserverService}, so the 
+ * profiler is not synchronized. The report is built after the service terminated.
+ */
+class ContentionProfiler {
+  // stands for the waits of the harness itself, e.g. for ticks, which are not reported
+  private static final String HARNESS = "harness";
+  private static final String UNKNOWN_SITE = "an unknown site";
+  // deep enough to get from the frames of a synchronizer to the code under test
+  private static final int STACK_DEPTH = 32;
+  private final ThreadMXBean threadMxBean;
+  private final boolean wasEnabled;
+  private final Map<String, Entry> locks = new HashMap<>();
+  private long unattributedMillis = 0;
+
+  /**
+   * Turns on thread contention monitoring if supported.
+   *
+   * @param threadMxBean the bean of the platform
+   */
+  ContentionProfiler(ThreadMXBean threadMxBean) {
+    this.threadMxBean = threadMxBean;
+    this.wasEnabled = threadMxBean.isThreadContentionMonitoringSupported()
+        && threadMxBean.isThreadContentionMonitoringEnabled();
+    if ( threadMxBean.isThreadContentionMonitoringSupported() ) {
+      threadMxBean.setThreadContentionMonitoringEnabled(true);
+    }
+  }
+
+  /**
+   * Restores the contention monitoring of the platform and builds the report.
+   *
+   * @return the locks contended on, ranked
+   */
+  ContentionReport finish() {
+    if ( threadMxBean.isThreadContentionMonitoringSupported() && !wasEnabled ) {
+      threadMxBean.setThreadContentionMonitoringEnabled(false);
+    }
+    List<LockProfile> profiles = new ArrayList<>(locks.size());
+    for ( Entry lock : locks.values() ) {
+      profiles.add(lock.profile());
+    }
+    profiles.sort(Comparator.comparing(LockProfile::contendedTime)
+        .thenComparingLong(LockProfile::samples).reversed());
+    return new ContentionReport(profiles, Duration.ofMillis(unattributedMillis));
+  }
+
+  /**
+   * @param sessions the number of sessions of the test
+   * @return a new sampler for the workers of a single test instance
+   */
+  Sampler sampler(int sessions) {
+    return new Sampler(sessions);
+  }
+
+  private Entry entry(String key) {
+    Entry entry = locks.get(key);
+    if ( entry == null ) {
+      final int at = key.indexOf(" at ");
+      entry = new Entry(key.substring(0, at), key.substring(at + 4));
+      locks.put(key, entry);
+    }
+    return entry;
+  }
+
+  // Returns the class of the lock the thread waits for and the site acquiring it, HARNESS for
+  // locks of the harness, or null if the thread does not wait for a lock (anymore).
+  private String lock(ThreadInfo info, long threadId) {
+    final String lock = info.getLockName();
+    if ( lock == null ) {
+      return null;
+    }
+    if ( ThreadSnapshot.isHarness(lock) ) {
+      return HARNESS;
+    }
+    final String site = site(threadId, lock);
+    if ( site == null ) {
+      return null;
+    }
+    final int at = lock.indexOf('@');
+    return ( ( at < 0 ) ? lock : lock.substring(0, at) ) + " at " + site;
+  }
+
+  // Returns the first frame outside the JDK of the given thread, or null if it stopped waiting 
+  // for the lock since the snapshot.
+  private String site(long threadId, String lock) {
+    final ThreadInfo info = threadMxBean.getThreadInfo(threadId, STACK_DEPTH);
+    if ( info == null || !lock.equals(info.getLockName()) ) {
+      return null;
+    }
+    for ( StackTraceElement frame : info.getStackTrace() ) {
+      final String type = frame.getClassName();
+      if ( !type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.") ) {
+        return type + "." + frame.getMethodName() + "(" + frame.getFileName() + ":" 
+            + frame.getLineNumber() + ")";
+      }
+    }
+    return UNKNOWN_SITE;
+  }
+
+  private static String block(int session, int block) {
+    return "session " + session + " block " + block;
+  }
+
+  /**
+   * Samples the workers of a single test instance. Keeps the counts and times of the workers at
+   * the previous sample, they accumulate across runs.
+   */
+  final class Sampler {
+    private final long[] threadIds;
+    private final long[] blockedCounts;
+    private final long[] blockedTimes;
+    private final long[] waitedCounts;
+    private final long[] waitedTimes;
+    // the lock each session was seen on in the previous sample, null if none
+    private final String[] lastLocks;
+    private boolean rebase = true;
+
+    private Sampler(int sessions) {
+      threadIds = new long[sessions];
+      blockedCounts = new long[sessions];
+      blockedTimes = new long[sessions];
+      waitedCounts = new long[sessions];
+      waitedTimes = new long[sessions];
+      lastLocks = new String[sessions];
+    }
+
+    /**
+     * Starts a new run. The workers waited for it in the harness since the previous sample, the 
+     * next sample drops their waits up to then. The harness never blocks on monitors, so blocks 
+     * since the previous sample are kept, the sessions may have run into one before the sample.
+     */
+    void startRun() {
+      rebase = true;
+    }
+
+    /**
+     * Attributes the contention since the previous sample.
+     *
+     * @param snapshot a fresh snapshot of the workers
+     * @param run the run the workers execute
+     */
+    void sample(ThreadSnapshot snapshot, TestRun run) {
+      final boolean attributeWaits = !rebase;
+      rebase = false;
+      for ( int i = 0, n = snapshot.size(); i < n; i++ ) {
+        final ThreadInfo info = snapshot.info(i);
+        if ( info == null ) {
+          continue;
+        }
+        if ( !attributeWaits ) {
+          lastLocks[i] = null;
+        }
+        if ( snapshot.id(i) != threadIds[i] ) {
+          // a new or replaced worker, its counts start over
+          threadIds[i] = snapshot.id(i);
+          blockedCounts[i] = 0;
+          blockedTimes[i] = 0;
+          waitedCounts[i] = 0;
+          waitedTimes[i] = 0;
+          lastLocks[i] = null;
+        }
+        final long blockedTime = Math.max(0, snapshot.blockedTimes[i]);
+        final long waitedTime = Math.max(0, snapshot.waitedTimes[i]);
+        final long dBlockedCount = snapshot.blockedCounts[i] - blockedCounts[i];
+        final long dBlockedTime = blockedTime - blockedTimes[i];
+        final long dWaitedCount = attributeWaits ? snapshot.waitedCounts[i] - waitedCounts[i] : 0;
+        final long dWaitedTime = attributeWaits ? waitedTime - waitedTimes[i] : 0;
+        blockedCounts[i] = snapshot.blockedCounts[i];
+        blockedTimes[i] = blockedTime;
+        waitedCounts[i] = snapshot.waitedCounts[i];
+        waitedTimes[i] = waitedTime;
+        final String lock = ( snapshot.states[i] == Thread.State.RUNNABLE ) 
+            ? null : lock(info, snapshot.id(i));
+        // an episode seen by the previous sample accumulated until now
+        final String target = ( lastLocks[i] != null ) ? lastLocks[i] : lock;
+        if ( target == HARNESS ) {
+          // not contention in the code under test
+        } else if ( target != null ) {
+          entry(target).add(dBlockedCount, dBlockedTime, dWaitedCount, dWaitedTime);
+        } else {
+          unattributedMillis += dBlockedTime + dWaitedTime;
+        }
+        if ( lock != null && lock != HARNESS ) {
+          final Entry entry = entry(lock);
+          entry.samples++;
+          entry.waitingBlocks.merge(block(i, run.currentBlock(i)), 1L, Long::sum);
+          final int owner = ( snapshot.lockOwnerIds[i] == ThreadSnapshot.NO_OWNER ) 
+              ? -1 : snapshot.indexOf(snapshot.lockOwnerIds[i]);
+          if ( owner >= 0 ) {
+            entry.owningBlocks.merge(block(owner, run.currentBlock(owner)), 1L, Long::sum);
+          }
+        }
+        lastLocks[i] = lock;
+      }
+    }
+  }
+
+  private static final class Entry {
+    final String type;
+    final String site;
+    long blockedCount;
+    long blockedMillis;
+    long waitedCount;
+    long waitedMillis;
+    long samples;
+    final Map<String, Long> waitingBlocks = new LinkedHashMap<>();
+    final Map<String, Long> owningBlocks = new LinkedHashMap<>();
+
+    Entry(String type, String site) {
+      this.type = type;
+      this.site = site;
+    }
+
+    void add(long blockedCount, long blockedMillis, long waitedCount, long waitedMillis) {
+      this.blockedCount += blockedCount;
+      this.blockedMillis += blockedMillis;
+      this.waitedCount += waitedCount;
+      this.waitedMillis += waitedMillis;
+    }
+
+    LockProfile profile() {
+      return new LockProfile(type, site, blockedCount, blockedMillis, waitedCount, waitedMillis, 
+          samples, waitingBlocks, owningBlocks);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The locks the sessions of a concurrent test contended on, across all repetitions of its last
+ * assertion, ranked by the time spent blocked on or waiting for them, see
+ * {@link ConcurrentTest#profileContention()}.
+ */
+public final class ContentionReport {
+  private final List<LockProfile> locks;
+  private final Duration unattributedTime;
+
+  ContentionReport(List<LockProfile> locks, Duration unattributedTime) {
+    this.locks = Collections.unmodifiableList(locks);
+    this.unattributedTime = unattributedTime;
+  }
+
+  /**
+   * @return the locks contended on, the most contended first
+   */
+  public List<LockProfile> locks() {
+    return locks;
+  }
+
+  /**
+   * @return the time sessions were blocked or waiting without being seen on any lock, that is, 
+   *     in episodes shorter than the sampling interval
+   */
+  public Duration unattributedTime() {
+    return unattributedTime;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder("Contention report, the most contended locks first:");
+    int rank = 1;
+    for ( LockProfile lock : locks ) {
+      report.append('\n').append(rank++).append(". ").append(lock);
+    }
+    if ( !unattributedTime.isZero() ) {
+      report.append("\nnot attributed to a lock: ").append(unattributedTime.toMillis())
+          .append(" ms");
+    }
+    return report.toString();
+  }
+
+  /**
+   * The contention on the monitors or synchronizers of a class acquired at a single site, across
+   * the instances of the class created by the runs.
+   */
+  public static final class LockProfile {
+    private final String lock;
+    private final String site;
+    private final long blockedCount;
+    private final long blockedMillis;
+    private final long waitedCount;
+    private final long waitedMillis;
+    private final long samples;
+    private final Map<String, Long> waitingBlocks;
+    private final Map<String, Long> owningBlocks;
+
+    LockProfile(String lock, String site, long blockedCount, long blockedMillis, 
+        long waitedCount, long waitedMillis, long samples, Map<String, Long> waitingBlocks, 
+        Map<String, Long> owningBlocks) {
+      this.lock = lock;
+      this.site = site;
+      this.blockedCount = blockedCount;
+      this.blockedMillis = blockedMillis;
+      this.waitedCount = waitedCount;
+      this.waitedMillis = waitedMillis;
+      this.samples = samples;
+      this.waitingBlocks = Collections.unmodifiableMap(waitingBlocks);
+      this.owningBlocks = Collections.unmodifiableMap(owningBlocks);
+    }
+
+    /**
+     * @return the class of the lock, e.g. {@code java.lang.Object}
+     */
+    public String lock() {
+      return lock;
+    }
+
+    /**
+     * @return the first frame outside the JDK of the sessions waiting for the lock, e.g. 
+     *     {@code org.example.Account.deposit(Account.java:42)}
+     */
+    public String site() {
+      return site;
+    }
+
+    /**
+     * @return the number of times sessions blocked entering the monitor
+     */
+    public long blockedCount() {
+      return blockedCount;
+    }
+
+    /**
+     * @return the time sessions were blocked entering the monitor
+     */
+    public Duration blockedTime() {
+      return Duration.ofMillis(blockedMillis);
+    }
+
+    /**
+     * @return the number of times sessions waited on the monitor or synchronizer
+     */
+    public long waitedCount() {
+      return waitedCount;
+    }
+
+    /**
+     * @return the time sessions waited on the monitor or synchronizer
+     */
+    public Duration waitedTime() {
+      return Duration.ofMillis(waitedMillis);
+    }
+
+    /**
+     * @return the time sessions were blocked on or waiting for the lock
+     */
+    public Duration contendedTime() {
+      return Duration.ofMillis(blockedMillis + waitedMillis);
+    }
+
+    /**
+     * @return the number of samples that saw a session blocked on or waiting for the lock
+     */
+    public long samples() {
+      return samples;
+    }
+
+    /**
+     * @return the number of samples per block that saw the block waiting for the lock, keyed 
+     *     by {@code "session <i> block <j>"}
+     */
+    public Map<String, Long> waitingBlocks() {
+      return waitingBlocks;
+    }
+
+    /**
+     * @return the number of samples per block that saw the block owning the lock while another
+     *     one waited for it, keyed by {@code "session <i> block <j>"}
+     */
+    public Map<String, Long> owningBlocks() {
+      return owningBlocks;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s at %s: %d ms contended, blocked %d times for %d ms, waited %d "
+          + "times for %d ms, %d samples, waiting %s, owning %s", lock, site, 
+          blockedMillis + waitedMillis, blockedCount, blockedMillis, waitedCount, waitedMillis, 
+          samples, waitingBlocks, owningBlocks);
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the sessions of a test run one at a time under the control of a {@link SchedulingStrategy}
+ * and records the schedule. A single token is passed between the sessions at scheduling points: 
+ * at the start of every block, at every tick waited for, and when a session ends. A session 
+ * without the token parks at its next scheduling point until the strategy chooses it.
+ *
+ * <p>The strategy only chooses once every session reached a scheduling point, including the 
+ * sessions released from a tick, so that the choices do not depend on the timing of the threads.
+ * A session holding the token may block in the code under test, then the observer takes the
+ * token away from it and passes it on. The session gives up the token for good, when it becomes 
+ * runnable again it runs alongside the token holder up to its next scheduling point.
+ *
+ * <p>A recorded schedule is a sequence of choices. Replaying it makes the same choices as long as
+ * the sessions chosen are ready, after that the strategy takes over.
+ */
+class CooperativeScheduler {
+  private static final Logger LOG = LoggerFactory.getLogger(CooperativeScheduler.class);
+  private static final int NONE = -1;
+  // the states of the sessions
+  private static final int NEW = 0;
+  private static final int READY = 1;
+  private static final int RUNNING = 2;
+  private static final int TICK = 3;
+  private static final int DETACHED = 4;
+  private static final int DONE = 5;
+  // the number of consecutive polls the token holder must be seen blocked before it is detached
+  private static final int DETACH_POLLS = 2;
+
+  private final Thread[] workers;
+  private final TickScheduler ticks;
+  private final SchedulingStrategy strategy;
+  private final int[] replay;
+  // guarded by this
+  private final int[] states;
+  private final int[] waitingTick;
+  // the object each session accesses after its scheduling point, null if unknown
+  private final Object[] targets;
+  private final int[] ready;
+  private int[] choices = new int[64];
+  private int choiceCount = 0;
+  private boolean diverged = false;
+  private long seed;
+  private volatile int holder = NONE;
+  private volatile boolean aborted = false;
+  // only accessed by the observer
+  private int blockedHolder = NONE;
+  private int blockedPolls = 0;
+
+  /**
+   * @param workers the worker threads of the sessions
+   * @param ticks the tick scheduler of the run
+   * @param strategy the strategy choosing the next session
+   * @param replay the choices of a schedule to replay, or {@code null}
+   */
+  CooperativeScheduler(
+      Thread[] workers, TickScheduler ticks, SchedulingStrategy strategy, int[] replay) {
+    this.workers = workers;
+    this.ticks = ticks;
+    this.strategy = strategy;
+    this.replay = replay;
+    this.states = new int[workers.length];
+    this.waitingTick = new int[workers.length];
+    this.targets = new Object[workers.length];
+    this.ready = new int[workers.length];
+  }
+
+  /**
+   * Prepares the next run. Only call while no session runs.
+   *
+   * @param seed the seed of the next run
+   */
+  synchronized void reset(long seed) {
+    this.seed = seed;
+    Arrays.fill(states, NEW);
+    Arrays.fill(targets, null);
+    choiceCount = 0;
+    diverged = false;
+    holder = NONE;
+    aborted = false;
+    blockedHolder = NONE;
+    blockedPolls = 0;
+    strategy.start(seed, workers.length);
+  }
+
+  /**
+   * A scheduling point: gives up the token if held, then parks until the session is chosen to
+   * run.
+   *
+   * @param session the index of the calling session
+   */
+  void point(int session) {
+    point(session, null);
+  }
+
+  /**
+   * A scheduling point before an access of the given object.
+   *
+   * @param session the index of the calling session
+   * @param target the object accessed next by the session, or {@code null} if unknown
+   */
+  void point(int session, Object target) {
+    synchronized ( this ) {
+      if ( holder == session ) {
+        holder = NONE;
+      }
+      states[session] = READY;
+      targets[session] = target;
+      dispatch();
+    }
+    awaitToken(session);
+  }
+
+  /**
+   * Gives up the token before the session waits for a tick. The session must pass a scheduling 
+   * point once the tick is reached.
+   *
+   * @param session the index of the calling session
+   * @param tick the tick the session waits for
+   */
+  synchronized void beforeTick(int session, int tick) {
+    if ( holder == session ) {
+      holder = NONE;
+    }
+    states[session] = TICK;
+    waitingTick[session] = tick;
+    dispatch();
+  }
+
+  /**
+   * Gives up the token for good when a session ends.
+   *
+   * @param session the index of the calling session
+   */
+  synchronized void finish(int session) {
+    if ( holder == session ) {
+      holder = NONE;
+    }
+    states[session] = DONE;
+    dispatch();
+  }
+
+  private void awaitToken(int session) {
+    while ( holder != session && !aborted ) {
+      LockSupport.park(this);
+      if ( Thread.currentThread().isInterrupted() ) {
+        // leave the interrupt to the code under test, which then runs uncontrolled
+        return;
+      }
+    }
+  }
+
+  // Passes the token to the session chosen by the strategy. Call with the monitor held.
+  private void dispatch() {
+    if ( holder != NONE || aborted ) {
+      return;
+    }
+    final int tick = ticks.tick;
+    int count = 0;
+    for ( int i = 0; i < states.length; i++ ) {
+      switch ( states[i] ) {
+        case NEW:
+          // wait for all sessions to arrive at their first scheduling point
+          return;
+        case TICK:
+          if ( waitingTick[i] <= tick ) {
+            // wait for the sessions released from a tick to arrive at a scheduling point
+            return;
+          }
+          break;
+        case READY:
+          ready[count++] = i;
+          break;
+        default:
+          break;
+      }
+    }
+    if ( count == 0 ) {
+      return;
+    }
+    final int chosen = choose(count);
+    strategy.chosen(chosen, targets[chosen]);
+    record(chosen);
+    states[chosen] = RUNNING;
+    holder = chosen;
+    LockSupport.unpark(workers[chosen]);
+  }
+
+  private int choose(int count) {
+    final int step = choiceCount;
+    final int chosen = strategy.choose(ready, count);
+    if ( replay == null || diverged ) {
+      return chosen;
+    }
+    if ( step < replay.length ) {
+      final int replayed = replay[step];
+      for ( int i = 0; i < count; i++ ) {
+        if ( ready[i] == replayed ) {
+          return replayed;
+        }
+      }
+    }
+    diverged = true;
+    LOG.warn("replay diverged from the recorded schedule at step {}", step);
+    return chosen;
+  }
+
+  private void record(int chosen) {
+    if ( choiceCount == choices.length ) {
+      choices = Arrays.copyOf(choices, choices.length * 2);
+    }
+    choices[choiceCount++] = chosen;
+  }
+
+  /**
+   * Takes the token away from its holder if it was seen blocked or waiting inside the code under
+   * test in several consecutive snapshots. Only call from the observer.
+   *
+   * @param snapshot the latest snapshot of the workers
+   * @return true, iff the token was taken away
+   */
+  boolean detachBlockedHolder(ThreadSnapshot snapshot) {
+    final int current = holder;
+    if ( current == NONE || snapshot.states[current] == Thread.State.RUNNABLE ) {
+      blockedHolder = NONE;
+      return false;
+    }
+    blockedPolls = ( current == blockedHolder ) ? blockedPolls + 1 : 1;
+    blockedHolder = current;
+    if ( blockedPolls < DETACH_POLLS ) {
+      return false;
+    }
+    synchronized ( this ) {
+      if ( holder != current ) {
+        return false;
+      }
+      LOG.debug("session {} blocked, passing on the token", current);
+      states[current] = DETACHED;
+      holder = NONE;
+      dispatch();
+    }
+    blockedHolder = NONE;
+    return true;
+  }
+
+  SchedulingStrategy strategy() {
+    return strategy;
+  }
+
+  /**
+   * Releases all sessions to run uncontrolled, e.g. after a deadlock was detected.
+   */
+  void abort() {
+    aborted = true;
+    for ( Thread worker : workers ) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  /**
+   * @return the schedule of the current run in the form accepted by 
+   *     {@link ConcurrentTest#replay(String)}
+   */
+  synchronized String schedule() {
+    StringBuilder schedule = new StringBuilder().append(seed).append(':');
+    for ( int i = 0; i < choiceCount; i++ ) {
+      if ( i > 0 ) {
+        schedule.append('.');
+      }
+      schedule.append(choices[i]);
+    }
+    return schedule.toString();
+  }
+
+  /**
+   * @return a description of the schedule of the current run for failure messages
+   */
+  synchronized String describe() {
+    return String.format("Controlled schedule of the failing run with %d scheduling decisions, "
+        + "replay with .replay(\"%s\")", choiceCount, schedule());
+  }
+
+  /**
+   * Parses a schedule recorded by {@link #schedule()}.
+   *
+   * @param schedule the schedule
+   * @return the seed followed by the choices
+   * @throws IllegalArgumentException if the schedule is malformed
+   */
+  static long[] parse(String schedule) {
+    final int colon = schedule.indexOf(':');
+    try {
+      if ( colon < 0 ) {
+        throw new IllegalArgumentException("not a schedule: " + schedule);
+      }
+      final String choices = schedule.substring(colon + 1);
+      final String[] steps = choices.isEmpty() ? new String[0] : choices.split("\\.");
+      final long[] parsed = new long[steps.length + 1];
+      parsed[0] = Long.parseLong(schedule.substring(0, colon));
+      for ( int i = 0; i < steps.length; i++ ) {
+        parsed[i + 1] = Integer.parseInt(steps[i]);
+      }
+      return parsed;
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException("not a schedule: " + schedule, e);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The interleavings a concurrent test exercised in its last assertion, see
+ * {@link ConcurrentTest#trackCoverage()}. Interleavings are told apart by a fingerprint of the
+ * order of block completions and tick arrivals and of the sessions seen blocked on each other.
+ */
+public final class Coverage {
+  private final long runs;
+  private final long[] curve;
+  private final int saturationRuns;
+  private final boolean saturated;
+
+  Coverage(long runs, long[] curve, int saturationRuns, boolean saturated) {
+    this.runs = runs;
+    this.curve = curve;
+    this.saturationRuns = saturationRuns;
+    this.saturated = saturated;
+  }
+
+  /**
+   * @return the number of runs fingerprinted
+   */
+  public long runs() {
+    return runs;
+  }
+
+  /**
+   * @return the number of distinct interleavings exercised
+   */
+  public int interleavings() {
+    return curve.length;
+  }
+
+  /**
+   * The coverage curve: for each distinct interleaving, in the order they were found, the number
+   * of runs executed until it was found. A curve flattening out indicates that further runs are
+   * unlikely to exercise new interleavings.
+   *
+   * @return the 1-based run that found each interleaving
+   */
+  public long[] curve() {
+    return curve.clone();
+  }
+
+  /**
+   * @param run the number of runs
+   * @return the number of distinct interleavings found by the given number of runs
+   */
+  public int interleavingsAfter(long run) {
+    int low = 0;
+    int high = curve.length;
+    while ( low < high ) {
+      final int mid = ( low + high ) >>> 1;
+      if ( curve[mid] <= run ) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return true, iff the test stopped early because no new interleaving was found for the 
+   *     number of runs given to {@link ConcurrentTest#saturate(int)}
+   */
+  public boolean saturated() {
+    return saturated;
+  }
+
+  @Override
+  public String toString() {
+    final long last = ( curve.length == 0 ) ? 0 : curve[curve.length - 1];
+    return String.format("%d distinct interleavings in %d runs, the last found in run %d%s", 
+        curve.length, runs, last, 
+        saturated ? String.format(", saturated after %d runs without a new one", saturationRuns)
+            : "");
+  }
+}
@@ -0,0 +1,75 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.util.LongHashSet;
+
+import java.util.Arrays;
+
+/**
+ * Counts the distinct interleavings of the runs of all instances of a test by their 
+ * fingerprints, see {@link Interleaving}. Runs are recorded once each, after the verdict on them.
+ */
+class CoverageTracker {
+  private final LongHashSet fingerprints = new LongHashSet();
+  // the number of consecutive runs without a new interleaving to stop after, 0 to never stop
+  private final int saturationRuns;
+  // guarded by this
+  private long runs = 0;
+  private long[] curve = new long[16];
+  private long lastNew = 0;
+  private volatile boolean saturated = false;
+
+  CoverageTracker(int saturationRuns) {
+    this.saturationRuns = saturationRuns;
+  }
+
+  /**
+   * Records the fingerprint of a finished run.
+   *
+   * @param fingerprint the fingerprint of the run
+   */
+  synchronized void record(long fingerprint) {
+    runs++;
+    if ( fingerprints.add(fingerprint) ) {
+      final int count = fingerprints.size();
+      if ( count > curve.length ) {
+        curve = Arrays.copyOf(curve, curve.length * 2);
+      }
+      curve[count - 1] = runs;
+      lastNew = runs;
+    } else if ( saturationRuns > 0 && runs - lastNew >= saturationRuns ) {
+      saturated = true;
+    }
+  }
+
+  /**
+   * @return true, iff the given number of consecutive runs exercised no new interleaving
+   */
+  boolean saturated() {
+    return saturated;
+  }
+
+  synchronized Coverage coverage() {
+    return new Coverage(runs, Arrays.copyOf(curve, fingerprints.size()), saturationRuns, 
+        saturated);
+  }
+}
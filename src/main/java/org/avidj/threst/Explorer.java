@@ -0,0 +1,216 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Enumerates the schedules of a test by a depth-first search with dynamic partial-order 
+ * reduction (DPOR) as described by Flanagan and Godefroid in "Dynamic Partial-Order Reduction for
+ * Model Checking Software". Each run follows the prefix of a previous schedule and then keeps the
+ * running session as long as it is ready. After the run, for every step the last earlier step of
+ * another session accessing the same object is looked up, and the later session is scheduled as
+ * an alternative at that earlier step. Runs differing only in the order of independent steps are
+ * not repeated.
+ *
+ * <p>A step accesses the object passed to its scheduling point. Steps without an object, the
+ * blocks and ticks of the test and scheduling points not naming an object, are dependent on all
+ * other steps. Without the instrumentation in {@code org.avidj.threst.agent} the exploration is 
+ * therefore an exhaustive enumeration of the interleavings of blocks.
+ *
+ * <p>The number of preemptions, switches away from a session that could have continued, is
+ * bounded. Most bugs need few preemptions, and the number of schedules grows exponentially with
+ * the bound. Alternatives exceeding the bound are dropped, each alternative is therefore also
+ * tried where the session before it started running, as in "Bounded Partial-Order Reduction" by 
+ * Coons et al. A session blocking inside the code under test, or an object accessed 
+ * outside of scheduling points, makes runs nondeterministic, then the exploration is incomplete.
+ */
+class Explorer implements SchedulingStrategy {
+  private final int preemptionBound;
+  // the steps of the current schedule
+  private int[] chosen = new int[64];
+  private Object[] targets = new Object[64];
+  private long[] enabled = new long[64];
+  private long[] backtrack = new long[64];
+  private long[] done = new long[64];
+  private int length = 0;
+  // the schedule to follow in the next run, the steps before this are kept from the last run
+  private int prefix = 0;
+  private int step = 0;
+  // the sessions ready at the current step
+  private long ready = 0;
+  private boolean pending = false;
+  private boolean exhausted = false;
+  private long schedules = 0;
+
+  /**
+   * @param preemptionBound the maximum number of preemptions per schedule
+   */
+  Explorer(int preemptionBound) {
+    Preconditions.checkArgument(preemptionBound >= 0, "preemption bound must be >= 0");
+    this.preemptionBound = preemptionBound;
+  }
+
+  @Override
+  public void start(long seed, int sessions) {
+    Preconditions.checkArgument(sessions <= Long.SIZE, "at most %s sessions", Long.SIZE);
+    advance();
+    step = 0;
+    pending = true;
+    schedules++;
+  }
+
+  @Override
+  public int choose(int[] ready, int count) {
+    long mask = 0;
+    for ( int i = 0; i < count; i++ ) {
+      mask |= 1L << ready[i];
+    }
+    this.ready = mask;
+    if ( step < prefix && ( mask & ( 1L << chosen[step] ) ) != 0 ) {
+      return chosen[step];
+    }
+    // continue the running session if possible, this does not cost a preemption
+    if ( step > 0 && ( mask & ( 1L << chosen[step - 1] ) ) != 0 ) {
+      return chosen[step - 1];
+    }
+    return ready[0];
+  }
+
+  @Override
+  public void chosen(int session, Object target) {
+    ensureCapacity(step + 1);
+    if ( step >= prefix ) {
+      chosen[step] = session;
+      backtrack[step] = 0;
+      done[step] = 1L << session;
+    } else if ( chosen[step] != session ) {
+      // the run diverged from the prefix, the steps after this one are new
+      chosen[step] = session;
+      done[step] |= 1L << session;
+      prefix = step;
+    }
+    targets[step] = target;
+    enabled[step] = ready;
+    step++;
+    length = step;
+  }
+
+  @Override
+  public boolean exhausted() {
+    advance();
+    return exhausted;
+  }
+
+  /**
+   * @return the number of schedules started
+   */
+  long schedules() {
+    return schedules;
+  }
+
+  // Adds the alternatives of the last run and moves on to the next schedule.
+  private void advance() {
+    if ( !pending ) {
+      return;
+    }
+    pending = false;
+    addBacktrackPoints();
+    for ( int i = length - 1; i >= 0; i-- ) {
+      long candidates = backtrack[i] & ~done[i] & enabled[i];
+      while ( candidates != 0 ) {
+        final int q = Long.numberOfTrailingZeros(candidates);
+        candidates &= candidates - 1;
+        done[i] |= 1L << q;
+        if ( preemptions(i) + preemption(i, q) <= preemptionBound ) {
+          chosen[i] = q;
+          backtrack[i] = 0;
+          prefix = i + 1;
+          length = i + 1;
+          return;
+        }
+      }
+    }
+    exhausted = true;
+    prefix = 0;
+    length = 0;
+  }
+
+  private void addBacktrackPoints() {
+    for ( int j = 1; j < length; j++ ) {
+      for ( int i = j - 1; i >= 0; i-- ) {
+        if ( chosen[i] != chosen[j] && dependent(targets[i], targets[j]) ) {
+          final long next = 1L << chosen[j];
+          final long alternatives = ( ( enabled[i] & next ) != 0 ) ? next : enabled[i];
+          backtrack[i] |= alternatives;
+          // switching at step i may exceed the preemption bound, switching at the start of the
+          // steps of the same session does not cost an additional preemption
+          final int switched = lastSwitch(i);
+          backtrack[switched] |= alternatives & enabled[switched];
+          break;
+        }
+      }
+    }
+  }
+
+  // the first step of the sequence of steps of the same session ending with the given step
+  private int lastSwitch(int step) {
+    int i = step;
+    while ( i > 0 && chosen[i - 1] == chosen[step] ) {
+      i--;
+    }
+    return i;
+  }
+
+  private static boolean dependent(Object a, Object b) {
+    return a == null || b == null || a == b;
+  }
+
+  // the number of preemptions in the steps before the given one
+  private int preemptions(int step) {
+    int count = 0;
+    for ( int i = 1; i < step; i++ ) {
+      count += preemption(i, chosen[i]);
+    }
+    return count;
+  }
+
+  private int preemption(int step, int session) {
+    if ( step == 0 ) {
+      return 0;
+    }
+    final int previous = chosen[step - 1];
+    return ( previous != session && ( enabled[step] & ( 1L << previous ) ) != 0 ) ? 1 : 0;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if ( capacity > chosen.length ) {
+      final int n = Math.max(capacity, chosen.length * 2);
+      chosen = Arrays.copyOf(chosen, n);
+      targets = Arrays.copyOf(targets, n);
+      enabled = Arrays.copyOf(enabled, n);
+      backtrack = Arrays.copyOf(backtrack, n);
+      done = Arrays.copyOf(done, n);
+    }
+  }
+}
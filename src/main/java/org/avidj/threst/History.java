@@ -0,0 +1,78 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The operations the sessions of a run recorded. Every session appends to a buffer of its own, 
+ * the sessions only share the logical clock stamping invocations and responses. The buffers are
+ * reused across runs.
+ */
+class History {
+  private final AtomicLong clock = new AtomicLong();
+  private final List<List<Operation>> buffers;
+
+  History(int sessions) {
+    buffers = new ArrayList<>(sessions);
+    for ( int i = 0; i < sessions; i++ ) {
+      buffers.add(new ArrayList<>());
+    }
+  }
+
+  void reset() {
+    clock.set(0);
+    for ( List<Operation> buffer : buffers ) {
+      buffer.clear();
+    }
+  }
+
+  /**
+   * @return the next time of the logical clock
+   */
+  long tick() {
+    return clock.incrementAndGet();
+  }
+
+  /**
+   * @param operation an operation that responded, only called by the session that executed it
+   */
+  void add(Operation operation) {
+    buffers.get(operation.session()).add(operation);
+  }
+
+  /**
+   * @return the operations of all sessions, only valid after the run finished
+   */
+  List<Operation> operations() {
+    int size = 0;
+    for ( List<Operation> buffer : buffers ) {
+      size += buffer.size();
+    }
+    final List<Operation> operations = new ArrayList<>(size);
+    for ( List<Operation> buffer : buffers ) {
+      operations.addAll(buffer);
+    }
+    return operations;
+  }
+}
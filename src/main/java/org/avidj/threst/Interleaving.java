@@ -0,0 +1,126 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computes a 64-bit fingerprint of the interleaving observed in a test run: the order in which
+ * the sessions complete their blocks and arrive at ticks, and which sessions the observer found
+ * blocked on a lock held by which other session. Runs with the same fingerprint very likely 
+ * exercised the same interleaving.
+ *
+ * <p>Every event takes the next position from a shared counter and adds a hash of its position
+ * and content to the sum of its session, so recording an event costs a single atomic increment
+ * and does not allocate. Blocking is only seen when the observer polls, that is, when no session
+ * was running for a while; the pairs of blocked and owning sessions are recorded as a set,
+ * independent of the number of polls.
+ */
+class Interleaving {
+  private static final long BLOCK = 1L << 62;
+  private static final long TICK = 2L << 62;
+
+  private final AtomicInteger position = new AtomicInteger();
+  // each entry only written by its session
+  private final long[] sums;
+  // for each session a bit set of the hashed indexes of the sessions it was blocked on,
+  // only written by the observer
+  private final AtomicLongArray blockedOn;
+
+  Interleaving(int sessions) {
+    sums = new long[sessions];
+    blockedOn = new AtomicLongArray(sessions);
+  }
+
+  /**
+   * Prepares the next run. Only call while no session runs.
+   */
+  void reset() {
+    position.set(0);
+    Arrays.fill(sums, 0);
+    for ( int i = 0; i < sums.length; i++ ) {
+      blockedOn.set(i, 0);
+    }
+  }
+
+  /**
+   * Records that a session completed a block.
+   *
+   * @param session the index of the session
+   * @param block the index of the block
+   */
+  void blockCompleted(int session, int block) {
+    record(session, BLOCK | ( (long) session << 31 ) | block);
+  }
+
+  /**
+   * Records that a session arrived at a tick.
+   *
+   * @param session the index of the session
+   * @param tick the tick waited for
+   */
+  void tickArrived(int session, int tick) {
+    record(session, TICK | ( (long) session << 31 ) | tick);
+  }
+
+  private void record(int session, long event) {
+    sums[session] += mix(position.getAndIncrement() * 0x9E3779B97F4A7C15L + event);
+  }
+
+  /**
+   * Records that the observer found a session blocked on a lock owned by another session. Only 
+   * call from the observer.
+   *
+   * @param session the index of the blocked session
+   * @param owner the index of the session owning the lock, or -1 if owned by another thread
+   */
+  void blocked(int session, int owner) {
+    final long bit = 1L << ( mix(owner) & 63 );
+    final long current = blockedOn.get(session);
+    if ( ( current & bit ) == 0 ) {
+      blockedOn.set(session, current | bit);
+    }
+  }
+
+  /**
+   * @return the fingerprint of the run, only valid after the run finished
+   */
+  long fingerprint() {
+    long fingerprint = position.get();
+    for ( int i = 0; i < sums.length; i++ ) {
+      fingerprint += sums[i];
+      final long blocked = blockedOn.get(i);
+      if ( blocked != 0 ) {
+        fingerprint += mix(blocked ^ mix(i));
+      }
+    }
+    return mix(fingerprint);
+  }
+
+  // the finalizer of SplittableRandom
+  private static long mix(long z) {
+    z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+    z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+    return z ^ ( z >>> 31 );
+  }
+}
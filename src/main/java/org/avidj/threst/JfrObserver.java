@@ -0,0 +1,179 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects contention evidence from the code under test through an in-process Flight Recorder
+ * event stream, as an alternative to sampling the waited and blocked counts of the workers on
+ * every poll. The JVM emits an event for every contended monitor enter, every monitor wait and 
+ * every park of a worker, with its duration, so that also short blocking episodes between polls
+ * are seen. Blocking on monitors and synchronizers of the harness itself is left out.
+ *
+ * <p>Events are emitted when the blocking ends and are delivered with a delay of up to a second.
+ * They therefore cannot tell which sessions are blocked right now: whether all sessions are 
+ * parked on a tick, deadlocked, or starving is still decided by the polls of the observer, so 
+ * the stream adds to their cost rather than replacing it. The events feed the metrics of the 
+ * sessions and the adaptive {@link StarvationThreshold}: every wait ended by a notification is a
+ * sample of how long the test legitimately waits for signals.
+ */
+class JfrObserver implements AutoCloseable {
+  static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+  static final String MONITOR_WAIT = "jdk.JavaMonitorWait";
+  static final String THREAD_PARK = "jdk.ThreadPark";
+
+  private final RecordingStream stream;
+  private final ConcurrentTest concurrentTest;
+  // the session of each worker thread by thread id
+  private final Map<Long, Integer> sessions = new ConcurrentHashMap<>();
+  // only accessed by the thread of the stream until it is stopped
+  private long monitorEnters = 0;
+  private long monitorWaits = 0;
+  private long parks = 0;
+
+  /**
+   * @return true, iff the Flight Recorder is available in this JVM
+   */
+  static boolean isAvailable() {
+    return FlightRecorder.isAvailable();
+  }
+
+  JfrObserver(ConcurrentTest concurrentTest) {
+    this.concurrentTest = concurrentTest;
+    stream = new RecordingStream();
+    for ( String event : new String[] { MONITOR_ENTER, MONITOR_WAIT, THREAD_PARK } ) {
+      stream.enable(event).withThreshold(Duration.ZERO).withoutStackTrace();
+    }
+    stream.setReuse(true);
+    stream.onEvent(MONITOR_ENTER, this::monitorEntered);
+    stream.onEvent(MONITOR_WAIT, this::monitorWaited);
+    stream.onEvent(THREAD_PARK, this::parked);
+  }
+
+  /**
+   * Attributes the events of the given thread to a session from now on.
+   *
+   * @param worker the worker thread
+   * @param session the index of the session it executes
+   */
+  void register(Thread worker, int session) {
+    sessions.put(worker.threadId(), session);
+  }
+
+  void start() {
+    stream.startAsync();
+  }
+
+  /**
+   * Stops recording and waits until all events recorded were processed.
+   */
+  void stop() {
+    stream.stop();
+  }
+
+  @Override
+  public void close() {
+    stream.close();
+  }
+
+  private void monitorEntered(RecordedEvent event) {
+    final int session = session(event, "monitorClass");
+    if ( session < 0 ) {
+      return;
+    }
+    monitorEnters++;
+    concurrentTest.metrics.threadSampled(session, 0, 1);
+  }
+
+  private void monitorWaited(RecordedEvent event) {
+    final int session = session(event, "monitorClass");
+    if ( session < 0 ) {
+      return;
+    }
+    monitorWaits++;
+    concurrentTest.metrics.threadSampled(session, 1, 0);
+    if ( !event.getBoolean("timedOut") && event.getThread("notifier") != null ) {
+      concurrentTest.starvation.signalled(event.getDuration().toNanos());
+    }
+  }
+
+  private void parked(RecordedEvent event) {
+    final int session = session(event, "parkedClass");
+    if ( session < 0 ) {
+      return;
+    }
+    parks++;
+    concurrentTest.metrics.threadSampled(session, 1, 0);
+  }
+
+  // Returns the session of the thread of the event, or -1 if the thread is not a worker or it
+  // blocked on an object of the harness, e.g. the monitor of a controlled schedule.
+  private int session(RecordedEvent event, String classField) {
+    final RecordedThread thread = event.getThread("eventThread");
+    if ( thread == null ) {
+      return -1;
+    }
+    final RecordedClass type = event.getClass(classField);
+    if ( type != null && ThreadSnapshot.isHarness(type.getName()) ) {
+      return -1;
+    }
+    final Integer session = sessions.get(thread.getJavaThreadId());
+    return ( session == null ) ? -1 : session;
+  }
+
+  /**
+   * @return the number of contended monitor enters of the sessions outside the harness, valid 
+   *     after {@link #stop()}
+   */
+  long monitorEnters() {
+    return monitorEnters;
+  }
+
+  /**
+   * @return the number of monitor waits of the sessions outside the harness, valid after 
+   *     {@link #stop()}
+   */
+  long monitorWaits() {
+    return monitorWaits;
+  }
+
+  /**
+   * @return the number of parks of the sessions outside the harness, valid after {@link #stop()}
+   */
+  long parks() {
+    return parks;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Flight Recorder saw %d contended monitor enters, %d monitor waits and "
+        + "%d parks of the sessions", monitorEnters, monitorWaits, parks);
+  }
+}
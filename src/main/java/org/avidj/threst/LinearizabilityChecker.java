@@ -0,0 +1,230 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks whether a history of operations is linearizable with respect to a sequential model, 
+ * that is, whether there is a sequential order of the operations that respects their real-time
+ * order and in which every operation returns its recorded result according to the model.
+ *
+ * <p>The search is the one of Wing and Gong with the memoization of Lowe: the invocations and 
+ * responses form a list ordered by time. The search linearizes the first invocation it can apply
+ * in the current state, removing it and its response from the list, and backtracks when it meets
+ * a response whose operation was not linearized yet. Every pair of linearized operations and 
+ * state is explored at most once. The history of every key of the model is checked on its own.
+ */
+final class LinearizabilityChecker {
+  private static final int REPORTED_OPERATIONS = 10;
+
+  private LinearizabilityChecker() {
+  }
+
+  /**
+   * @param <S> the type of the states of the model
+   * @param spec the sequential model
+   * @param history the operations of all sessions
+   * @return a description of the violation, or {@code null} if the history is linearizable
+   */
+  static <S> String check(SequentialSpec<S> spec, List<Operation> history) {
+    final Map<Object, List<Operation>> partitions = new LinkedHashMap<>();
+    for ( Operation operation : history ) {
+      partitions.computeIfAbsent(spec.key(operation), (key) -> new ArrayList<>()).add(operation);
+    }
+    for ( Map.Entry<Object, List<Operation>> partition : partitions.entrySet() ) {
+      final String violation = check(spec, partition.getKey(), partition.getValue());
+      if ( violation != null ) {
+        return violation;
+      }
+    }
+    return null;
+  }
+
+  private static <S> String check(SequentialSpec<S> spec, Object key, List<Operation> operations) {
+    final int n = operations.size();
+    final Event head = events(operations);
+    final Set<Configuration> explored = new HashSet<>();
+    final BitSet linearized = new BitSet(n);
+    final Event[] stackEvents = new Event[n];
+    final Object[] stackStates = new Object[n];
+    int depth = 0;
+    BitSet deepest = new BitSet(n);
+    int deepestDepth = 0;
+    S state = spec.initialState();
+    Event event = head.next;
+    while ( head.next != null ) {
+      if ( event.call ) {
+        final S next = spec.apply(state, operations.get(event.id));
+        boolean progress = false;
+        if ( next != null ) {
+          linearized.set(event.id);
+          progress = explored.add(new Configuration((BitSet) linearized.clone(), next));
+          if ( !progress ) {
+            linearized.clear(event.id);
+          }
+        }
+        if ( progress ) {
+          stackEvents[depth] = event;
+          stackStates[depth++] = state;
+          if ( depth > deepestDepth ) {
+            deepest = (BitSet) linearized.clone();
+            deepestDepth = depth;
+          }
+          state = next;
+          event.lift();
+          event = head.next;
+        } else {
+          event = event.next;
+        }
+      } else {
+        // the operation of this response must have been linearized before, backtrack
+        if ( depth == 0 ) {
+          return violation(key, operations, deepest);
+        }
+        event = stackEvents[--depth];
+        @SuppressWarnings("unchecked")
+        final S previous = (S) stackStates[depth];
+        state = previous;
+        stackStates[depth] = null;
+        linearized.clear(event.id);
+        event.unlift();
+        event = event.next;
+      }
+    }
+    return null;
+  }
+
+  // the invocations and responses in the order of time, behind a sentinel head
+  private static Event events(List<Operation> operations) {
+    final Event[] events = new Event[2 * operations.size()];
+    for ( int i = 0, n = operations.size(); i < n; i++ ) {
+      final Operation operation = operations.get(i);
+      final Event call = new Event(i, true, operation.invoked());
+      final Event response = new Event(i, false, operation.responded());
+      call.match = response;
+      events[2 * i] = call;
+      events[2 * i + 1] = response;
+    }
+    Arrays.sort(events, Comparator.comparingLong((Event e) -> e.time));
+    final Event head = new Event(-1, false, Long.MIN_VALUE);
+    Event last = head;
+    for ( Event event : events ) {
+      last.next = event;
+      event.prev = last;
+      last = event;
+    }
+    return head;
+  }
+
+  private static String violation(Object key, List<Operation> operations, BitSet linearized) {
+    final StringBuilder message = new StringBuilder(String.format(
+        "History is not linearizable: no sequential order of the %d operations%s matches the "
+        + "model, at most %d of them could be linearized. The first operations not linearized:", 
+        operations.size(), ( key == null ) ? "" : " on " + key, linearized.cardinality()));
+    final List<Operation> rest = new ArrayList<>();
+    for ( int i = 0, n = operations.size(); i < n; i++ ) {
+      if ( !linearized.get(i) ) {
+        rest.add(operations.get(i));
+      }
+    }
+    rest.sort(Comparator.comparingLong(Operation::invoked));
+    for ( int i = 0; i < Math.min(REPORTED_OPERATIONS, rest.size()); i++ ) {
+      message.append("\n  ").append(rest.get(i));
+    }
+    return message.toString();
+  }
+
+  private static final class Event {
+    final int id;
+    final boolean call;
+    final long time;
+    // the response of an invocation
+    Event match;
+    Event prev;
+    Event next;
+
+    Event(int id, boolean call, long time) {
+      this.id = id;
+      this.call = call;
+      this.time = time;
+    }
+
+    // removes this invocation and its response from the list
+    void lift() {
+      prev.next = next;
+      if ( next != null ) {
+        next.prev = prev;
+      }
+      match.prev.next = match.next;
+      if ( match.next != null ) {
+        match.next.prev = match.prev;
+      }
+    }
+
+    // puts this invocation and its response back in reverse order of lifting
+    void unlift() {
+      match.prev.next = match;
+      if ( match.next != null ) {
+        match.next.prev = match;
+      }
+      prev.next = this;
+      if ( next != null ) {
+        next.prev = this;
+      }
+    }
+  }
+
+  private static final class Configuration {
+    private final BitSet linearized;
+    private final Object state;
+    private final int hash;
+
+    Configuration(BitSet linearized, Object state) {
+      this.linearized = linearized;
+      this.state = state;
+      this.hash = 31 * linearized.hashCode() + state.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if ( !( obj instanceof Configuration ) ) {
+        return false;
+      }
+      final Configuration other = (Configuration) obj;
+      return hash == other.hash && state.equals(other.state) 
+          && linearized.equals(other.linearized);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Injects random delays into the sessions of a test run to widen race windows: a yield, a spin 
+ * of up to {@value #MAX_SPIN_NANOS} ns, or a park of up to {@value #MAX_PARK_NANOS} ns. Noise is
+ * injected before every block, after every tick, and, with the instrumentation in 
+ * {@code org.avidj.threst.agent}, at the scheduling points inside the code under test.
+ *
+ * <p>The decisions of each session are drawn from a generator of its own, seeded from the seed of
+ * the run and the index of the session, so that they do not depend on the timing of other 
+ * sessions. The generator keeps its state in a long per session and does not allocate. 
+ */
+class Noise {
+  static final long MAX_SPIN_NANOS = 20_000;
+  static final long MAX_PARK_NANOS = 100_000;
+  // the kinds of delay
+  static final int NONE = 0;
+  static final int YIELD = 1;
+  static final int SPIN = 2;
+  static final int PARK = 3;
+
+  private final double intensity;
+  // the state of the generator of each session, each entry only accessed by its session
+  private final long[] states;
+  private long seed;
+  private int repetition;
+
+  /**
+   * @param sessions the number of sessions
+   * @param intensity the probability of a delay at each point
+   */
+  Noise(int sessions, double intensity) {
+    this.intensity = intensity;
+    this.states = new long[sessions];
+  }
+
+  /**
+   * Prepares the next run. Only call while no session runs.
+   *
+   * @param seed the seed of the noise of the test
+   * @param repetition the index of the repetition, the noise of each repetition is derived from
+   *     the seed and the index
+   */
+  void reset(long seed, int repetition) {
+    this.seed = seed;
+    this.repetition = repetition;
+    final long runSeed = mix(seed + ( repetition + 1 ) * 0x9E3779B97F4A7C15L);
+    for ( int i = 0; i < states.length; i++ ) {
+      states[i] = mix(runSeed + ( i + 1 ) * 0x9E3779B97F4A7C15L);
+    }
+  }
+
+  /**
+   * Delays the calling session at random.
+   *
+   * @param session the index of the calling session
+   */
+  void inject(int session) {
+    final long decision = decide(session);
+    final long nanos = decision >>> 2;
+    switch ( (int) ( decision & 3 ) ) {
+      case YIELD:
+        Thread.yield();
+        break;
+      case SPIN:
+        final long end = System.nanoTime() + nanos;
+        while ( System.nanoTime() - end < 0 ) {
+          Thread.onSpinWait();
+        }
+        break;
+      case PARK:
+        LockSupport.parkNanos(this, nanos);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Draws the next decision of a session.
+   *
+   * @param session the index of the session
+   * @return the kind of delay in the lowest 2 bits, the duration in nanoseconds above them
+   */
+  long decide(int session) {
+    final long r = next(session);
+    if ( ( r >>> 11 ) * 0x1.0p-53 >= intensity ) {
+      return NONE;
+    }
+    final long s = next(session);
+    final int kind = 1 + (int) ( ( s >>> 1 ) % 3 );
+    final long max = ( kind == PARK ) ? MAX_PARK_NANOS : MAX_SPIN_NANOS;
+    return ( ( ( s >>> 16 ) % max ) << 2 ) | kind;
+  }
+
+  private long next(int session) {
+    final long state = states[session] + 0x9E3779B97F4A7C15L;
+    states[session] = state;
+    return mix(state);
+  }
+
+  /**
+   * @return a description of the noise of the current run for failure messages
+   */
+  String describe() {
+    return String.format("Noise of the failing run: intensity %s, seed %d, repetition %d, "
+        + "the same noise is injected by .noise(%s, %dL) in repetition %d", intensity, seed, 
+        repetition, intensity, seed, repetition + 1);
+  }
+
+  // the finalizer of SplittableRandom
+  private static long mix(long z) {
+    z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+    z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+    return z ^ ( z >>> 31 );
+  }
+}
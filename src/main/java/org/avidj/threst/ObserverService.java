@@ -0,0 +1,135 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single long-lived thread observing the runs of all instances of a concurrent test. Test runs
+ * signal the service when they start, when a session parks on a tick, and when a session
+ * finishes. The service is dormant while no run is in progress and polls runs in progress only
+ * as a fallback. It is started and closed together with the test.
+ */
+class ObserverService implements Runnable {
+  private final TestThreadObserver[] observers;
+  private final Thread thread;
+  private int observerCount = 0;
+  private volatile boolean closed = false;
+  // only written by the service thread, read after it terminated
+  private long observeNanos = 0;
+
+  ObserverService(int capacity) {
+    observers = new TestThreadObserver[capacity];
+    thread = new Thread(this, "threst-observer");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Registers the observer of a test instance. All observers must be registered before the
+   * service is started.
+   *
+   * @param observer the observer to step
+   */
+  void add(TestThreadObserver observer) {
+    Preconditions.checkState(thread.getState() == Thread.State.NEW, "service already started");
+    observers[observerCount++] = observer;
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  Thread thread() {
+    return thread;
+  }
+
+  /**
+   * Wakes up the service to reconsider the state of the runs in progress.
+   */
+  void signal() {
+    LockSupport.unpark(thread);
+  }
+
+  @Override
+  public void run() {
+    while ( !closed ) {
+      final long now = System.nanoTime();
+      long delay = Long.MAX_VALUE;
+      for ( int i = 0; i < observerCount; i++ ) {
+        if ( observers[i].observe(now) ) {
+          delay = Math.min(delay, observers[i].nextPoll() - now);
+        }
+      }
+      observeNanos += System.nanoTime() - now;
+      if ( delay == Long.MAX_VALUE ) {
+        // dormant until the next run starts
+        LockSupport.park(this);
+      } else {
+        LockSupport.parkNanos(this, delay);
+      }
+    }
+  }
+
+  /**
+   * @return the number of polls of all observers
+   */
+  long pollCount() {
+    long count = 0;
+    for ( int i = 0; i < observerCount; i++ ) {
+      count += observers[i].pollCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return the total CPU time in nanoseconds all observers spent polling
+   */
+  long pollCpuNanos() {
+    long nanos = 0;
+    for ( int i = 0; i < observerCount; i++ ) {
+      nanos += observers[i].pollCpuNanos();
+    }
+    return nanos;
+  }
+
+  /**
+   * @return the total time in nanoseconds the service spent stepping observers, only valid after
+   *     the service was closed
+   */
+  long observeNanos() {
+    return observeNanos;
+  }
+
+  /**
+   * Stops the service and waits for its thread to terminate.
+   *
+   * @throws InterruptedException if interrupted while waiting for the service to terminate
+   */
+  void close() throws InterruptedException {
+    closed = true;
+    signal();
+    if ( thread.getState() != Thread.State.NEW ) {
+      thread.join();
+    }
+  }
+}
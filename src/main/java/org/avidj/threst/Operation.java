@@ -0,0 +1,91 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * An operation recorded by a session with {@link TestRun.TestThread#record}. Its invocation and
+ * response are stamped by a logical clock shared by all sessions of a run: an operation precedes
+ * another one iff it responded before the other one was invoked.
+ */
+public final class Operation {
+  private final int session;
+  private final String name;
+  private final Object argument;
+  private final Object result;
+  private final long invoked;
+  private final long responded;
+
+  Operation(int session, String name, Object argument, Object result, long invoked, 
+      long responded) {
+    this.session = session;
+    this.name = name;
+    this.argument = argument;
+    this.result = result;
+    this.invoked = invoked;
+    this.responded = responded;
+  }
+
+  /**
+   * @return the index of the session that executed the operation
+   */
+  public int session() {
+    return session;
+  }
+
+  /**
+   * @return the name of the operation, e.g. "put"
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * @param <A> the type of the argument
+   * @return the argument of the operation, possibly {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public <A> A argument() {
+    return (A) argument;
+  }
+
+  /**
+   * @param <R> the type of the result
+   * @return the result of the operation, the exception if it threw one
+   */
+  @SuppressWarnings("unchecked")
+  public <R> R result() {
+    return (R) result;
+  }
+
+  long invoked() {
+    return invoked;
+  }
+
+  long responded() {
+    return responded;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("session %d: %s(%s) -> %s [%d, %d]", 
+        session, name, argument, result, invoked, responded);
+  }
+}
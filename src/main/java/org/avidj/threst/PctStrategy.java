@@ -0,0 +1,113 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.base.Preconditions;
+
+import java.util.SplittableRandom;
+
+/**
+ * Probabilistic concurrency testing (PCT) as described by Burckhardt et al. in "A Randomized 
+ * Scheduler with Probabilistic Guarantees of Finding Bugs". Every session gets a random priority
+ * at the start of a run and the ready session with the highest priority always runs. At 
+ * {@code depth - 1} randomly chosen steps, the session about to run is demoted below all others.
+ *
+ * <p>A bug of depth {@code d}, that is, a bug that manifests if {@code d} ordering constraints 
+ * between sessions are met, is found in a single run with a probability of at least 
+ * {@code 1 / (n * k^(d - 1))} for {@code n} sessions and {@code k} scheduling decisions per run.
+ * Most bugs have a small depth. Scheduling points inside the code under test are only available
+ * with the instrumentation in {@code org.avidj.threst.agent}, without it only the blocks and ticks
+ * of the test are scheduling points.
+ *
+ * <p>The number of steps per run is not known in advance. It is estimated by the largest number
+ * of steps seen in previous runs of the same instance, starting with the given estimate.
+ */
+public class PctStrategy implements SchedulingStrategy {
+  private final int depth;
+  private int steps;
+  private SplittableRandom random;
+  private int[] priorities = new int[0];
+  private final int[] changePoints;
+  private int step;
+
+  /**
+   * @param depth the depth of the bugs to find, at least 1
+   */
+  public PctStrategy(int depth) {
+    this(depth, 16);
+  }
+
+  /**
+   * @param depth the depth of the bugs to find, at least 1
+   * @param steps the estimated number of scheduling decisions per run
+   */
+  public PctStrategy(int depth, int steps) {
+    Preconditions.checkArgument(depth > 0, "depth must be > 0");
+    Preconditions.checkArgument(steps > 0, "steps must be > 0");
+    this.depth = depth;
+    this.steps = steps;
+    this.changePoints = new int[depth - 1];
+  }
+
+  @Override
+  public void start(long seed, int sessions) {
+    // learn the length of runs from the previous run
+    steps = Math.max(steps, step);
+    step = 0;
+    random = new SplittableRandom(seed);
+    if ( priorities.length != sessions ) {
+      priorities = new int[sessions];
+    }
+    // a random permutation of the priorities depth .. depth + sessions - 1
+    for ( int i = 0; i < sessions; i++ ) {
+      final int j = random.nextInt(i + 1);
+      priorities[i] = priorities[j];
+      priorities[j] = depth + i;
+    }
+    for ( int i = 0; i < changePoints.length; i++ ) {
+      changePoints[i] = 1 + random.nextInt(steps);
+    }
+  }
+
+  @Override
+  public int choose(int[] ready, int count) {
+    step++;
+    int chosen = highest(ready, count);
+    for ( int i = 0; i < changePoints.length; i++ ) {
+      if ( changePoints[i] == step ) {
+        // demote the session about to run below all initial priorities
+        priorities[chosen] = depth - 1 - i;
+        chosen = highest(ready, count);
+      }
+    }
+    return chosen;
+  }
+
+  private int highest(int[] ready, int count) {
+    int highest = ready[0];
+    for ( int i = 1; i < count; i++ ) {
+      if ( priorities[ready[i]] > priorities[highest] ) {
+        highest = ready[i];
+      }
+    }
+    return highest;
+  }
+}
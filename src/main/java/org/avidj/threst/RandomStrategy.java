@@ -0,0 +1,40 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.SplittableRandom;
+
+/**
+ * Chooses the next session uniformly at random among the sessions ready to run.
+ */
+class RandomStrategy implements SchedulingStrategy {
+  private SplittableRandom random;
+
+  @Override
+  public void start(long seed, int sessions) {
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public int choose(int[] ready, int count) {
+    return ready[random.nextInt(count)];
+  }
+}
@@ -0,0 +1,65 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * Executes single runs of a test, without the budget, the verdict and the report of 
+ * {@link ConcurrentTest#assertSuccess()}. This is the entry point for measuring the overhead of 
+ * the harness itself: the sessions and the observer are started once and reused by every run.
+ * Close the harness to stop them.
+ */
+public final class RunHarness implements AutoCloseable {
+  private final ObserverService observerService;
+  private final TestInstance instance;
+
+  /**
+   * @param test the test, its sessions are copied
+   */
+  public RunHarness(ConcurrentTest test) {
+    observerService = new ObserverService(1);
+    instance = new TestInstance(test, new Budget(Integer.MAX_VALUE, 0),
+        new Verdict(test.sessionCount), observerService);
+    observerService.start();
+  }
+
+  /**
+   * Executes a single run.
+   *
+   * @return the number of sessions that finished the run successfully
+   */
+  public int runOnce() {
+    instance.run.runOnce();
+    return instance.run.successCount();
+  }
+
+  /**
+   * Stops the sessions and the observer. If interrupted while waiting for them to stop, the
+   * interrupt flag of the calling thread is restored.
+   */
+  @Override
+  public void close() {
+    try {
+      instance.shutdown();
+      observerService.close();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
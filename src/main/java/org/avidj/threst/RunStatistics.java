@@ -0,0 +1,104 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+
+/**
+ * What a concurrent test achieved in its last assertion: the number of repetitions executed, the
+ * throughput, and where the time went. Setup, run and observe times are summed over all
+ * instances and may therefore exceed the elapsed wall-clock time with a parallelism above 1.
+ */
+public final class RunStatistics {
+  private final long repetitions;
+  private final long elapsedNanos;
+  private final long setupNanos;
+  private final long runNanos;
+  private final long observeNanos;
+  private final long startSkewNanos;
+
+  RunStatistics(long repetitions, long elapsedNanos, long setupNanos, long runNanos,
+      long observeNanos, long startSkewNanos) {
+    this.repetitions = repetitions;
+    this.elapsedNanos = elapsedNanos;
+    this.setupNanos = setupNanos;
+    this.runNanos = runNanos;
+    this.observeNanos = observeNanos;
+    this.startSkewNanos = startSkewNanos;
+  }
+
+  /**
+   * @return the number of repetitions executed
+   */
+  public long repetitions() {
+    return repetitions;
+  }
+
+  /**
+   * @return the wall-clock time from the first to the last repetition
+   */
+  public Duration elapsed() {
+    return Duration.ofNanos(elapsedNanos);
+  }
+
+  /**
+   * @return the number of repetitions executed per second of wall-clock time
+   */
+  public double repetitionsPerSecond() {
+    return ( elapsedNanos == 0 ) ? 0 : repetitions * 1e9 / elapsedNanos;
+  }
+
+  /**
+   * @return the time spent preparing runs, including the creation of their state
+   */
+  public Duration setupTime() {
+    return Duration.ofNanos(setupNanos);
+  }
+
+  /**
+   * @return the time from starting runs until they were finished and observed
+   */
+  public Duration runTime() {
+    return Duration.ofNanos(runNanos);
+  }
+
+  /**
+   * @return the time the observer spent stepping the runs in progress
+   */
+  public Duration observeTime() {
+    return Duration.ofNanos(observeNanos);
+  }
+
+  /**
+   * @return the median time between the first and the last session starting a run, see
+   *     {@link ConcurrentTest#startBarrier()}
+   */
+  public Duration startSkew() {
+    return Duration.ofNanos(startSkewNanos);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d repetitions in %d ms (%.1f/s), setup %d ms, run %d ms, observe %d ms"
+        + ", start skew %d ns", repetitions, elapsed().toMillis(), repetitionsPerSecond(), 
+        setupTime().toMillis(), runTime().toMillis(), observeTime().toMillis(), startSkewNanos);
+  }
+}
@@ -0,0 +1,122 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.base.Preconditions;
+
+import org.avidj.threst.TestRun.TestThread;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Runs a scenario at a growing number of sessions, 1, 2, 4, and so on up to a maximum, in stress
+ * mode, and measures the throughput at each point. Every point is a complete concurrent test, 
+ * a point failing its assertion fails the sweep. The result is a {@link ScalingCurve}.
+ *
+ * <pre>
+ * ScalingCurve curve = sweep((i) -&gt; thread().exec(() -&gt; map.merge(i, 1, Integer::sum)))
+ *     .upTo(8)
+ *     .configure((test) -&gt; test.stress(Duration.ofMillis(500)))
+ *     .run();
+ * </pre>
+ */
+public final class ScalabilitySweep {
+  private static final Duration DEFAULT_STRESS = Duration.ofMillis(200);
+
+  private final IntFunction<TestThread> template;
+  private int maxSessions = Runtime.getRuntime().availableProcessors();
+  private Consumer<ConcurrentTest> configuration = (test) -> { };
+
+  private ScalabilitySweep(IntFunction<TestThread> template) {
+    this.template = template;
+  }
+
+  /**
+   * Creates a sweep, which can be further configured before running it.
+   *
+   * @param template creates the session with the given index, called anew for every point
+   * @return a new sweep up to the number of available processors
+   */
+  public static ScalabilitySweep sweep(IntFunction<TestThread> template) {
+    return new ScalabilitySweep(template);
+  }
+
+  /**
+   * @param maxSessions the number of sessions of the last point, also measured if it is not a
+   *     power of two
+   * @return this
+   * @throws IllegalArgumentException if the number of sessions is not positive
+   */
+  public ScalabilitySweep upTo(int maxSessions) {
+    Preconditions.checkArgument(maxSessions > 0, "sessions must be > 0");
+    this.maxSessions = maxSessions;
+    return this;
+  }
+
+  /**
+   * Configures the test of every point. Each point stresses its sessions for 200 ms by default,
+   * the configuration may change that or add e.g. repetitions.
+   *
+   * @param configuration applied to the test of every point before it is run
+   * @return this
+   */
+  public ScalabilitySweep configure(Consumer<ConcurrentTest> configuration) {
+    this.configuration = configuration;
+    return this;
+  }
+
+  /**
+   * @return the throughput measured at each point
+   * @throws AssertionError if a point fails its assertion
+   */
+  public ScalingCurve run() {
+    final List<Integer> counts = sessionCounts(maxSessions);
+    final int[] sessions = new int[counts.size()];
+    final double[] throughputs = new double[counts.size()];
+    for ( int p = 0; p < sessions.length; p++ ) {
+      final int n = counts.get(p);
+      final TestThread[] more = new TestThread[n - 1];
+      for ( int i = 1; i < n; i++ ) {
+        more[i - 1] = template.apply(i);
+      }
+      final ConcurrentTest test = ConcurrentTest.threads(template.apply(0), more)
+          .stress(DEFAULT_STRESS);
+      configuration.accept(test);
+      test.assertSuccess();
+      sessions[p] = n;
+      throughputs[p] = test.stressReport().total().operationsPerSecond();
+    }
+    return new ScalingCurve(sessions, throughputs);
+  }
+
+  static List<Integer> sessionCounts(int maxSessions) {
+    final List<Integer> counts = new ArrayList<>();
+    for ( int n = 1; n < maxSessions; n *= 2 ) {
+      counts.add(n);
+    }
+    counts.add(maxSessions);
+    return counts;
+  }
+}
@@ -0,0 +1,149 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Locale;
+
+/**
+ * The throughput of a scenario over the number of sessions, measured by a 
+ * {@link ScalabilitySweep}. The speedup at a point is its throughput relative to the throughput 
+ * of a single session, the efficiency is the speedup per session. The serial fraction {@code s} 
+ * is fitted to Amdahl's law, {@code speedup(n) = 1 / (s + (1 - s) / n)}, by least squares over 
+ * the inverse speedups: 0 means perfect scaling, 1 no scaling at all.
+ */
+public final class ScalingCurve {
+  private final int[] sessions;
+  private final double[] throughputs;
+  private final double serialFraction;
+
+  ScalingCurve(int[] sessions, double[] throughputs) {
+    this.sessions = sessions;
+    this.throughputs = throughputs;
+    this.serialFraction = fitSerialFraction();
+  }
+
+  // 1 / speedup(n) - 1 / n = s * (1 - 1 / n) is linear in s, a single session does not inform it
+  private double fitSerialFraction() {
+    double xy = 0;
+    double xx = 0;
+    for ( int p = 0; p < sessions.length; p++ ) {
+      final double speedup = speedup(p);
+      if ( sessions[p] == 1 || speedup <= 0 ) {
+        continue;
+      }
+      final double x = 1 - 1.0 / sessions[p];
+      final double y = 1 / speedup - 1.0 / sessions[p];
+      xy += x * y;
+      xx += x * x;
+    }
+    return ( xx == 0 ) ? 0 : Math.max(0, Math.min(1, xy / xx));
+  }
+
+  /**
+   * @return the number of points measured
+   */
+  public int size() {
+    return sessions.length;
+  }
+
+  /**
+   * @param point the index of a point
+   * @return the number of sessions at the point
+   */
+  public int sessions(int point) {
+    return sessions[point];
+  }
+
+  /**
+   * @param point the index of a point
+   * @return the operations per second of all sessions at the point
+   */
+  public double throughput(int point) {
+    return throughputs[point];
+  }
+
+  /**
+   * @param point the index of a point
+   * @return the throughput at the point relative to the throughput of the first point
+   */
+  public double speedup(int point) {
+    return ( throughputs[0] == 0 ) ? 0 : throughputs[point] / throughputs[0];
+  }
+
+  /**
+   * @param point the index of a point
+   * @return the speedup at the point per session
+   */
+  public double efficiency(int point) {
+    return speedup(point) / sessions[point];
+  }
+
+  /**
+   * @return the fraction of the work that does not scale, between 0 and 1
+   */
+  public double serialFraction() {
+    return serialFraction;
+  }
+
+  /**
+   * @param n a number of sessions
+   * @return the speedup predicted by Amdahl's law with the fitted serial fraction
+   */
+  public double predictedSpeedup(int n) {
+    return 1 / ( serialFraction + ( 1 - serialFraction ) / n );
+  }
+
+  /**
+   * @return a header line and a line per point with sessions, throughput, speedup, efficiency and
+   *     the speedup predicted from the serial fraction
+   */
+  public String toCsv() {
+    StringBuilder csv = new StringBuilder(
+        "sessions,throughput,speedup,efficiency,predicted_speedup\n");
+    for ( int p = 0; p < sessions.length; p++ ) {
+      csv.append(String.format(Locale.ROOT, "%d,%.1f,%.4f,%.4f,%.4f\n", sessions[p], 
+          throughputs[p], speedup(p), efficiency(p), predictedSpeedup(sessions[p])));
+    }
+    return csv.toString();
+  }
+
+  /**
+   * @return the serial fraction and the points as a JSON object
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder(String.format(Locale.ROOT, 
+        "{\"serialFraction\":%.4f,\"points\":[", serialFraction));
+    for ( int p = 0; p < sessions.length; p++ ) {
+      json.append(( p == 0 ) ? "" : ",").append(String.format(Locale.ROOT, 
+          "{\"sessions\":%d,\"throughput\":%.1f,\"speedup\":%.4f,\"efficiency\":%.4f}", 
+          sessions[p], throughputs[p], speedup(p), efficiency(p)));
+    }
+    return json.append("]}").toString();
+  }
+
+  @Override
+  public String toString() {
+    final int last = sessions.length - 1;
+    return String.format(Locale.ROOT, 
+        "speedup %.2f (efficiency %.2f) at %d sessions, serial fraction %.3f", 
+        speedup(last), efficiency(last), sessions[last], serialFraction);
+  }
+}
@@ -0,0 +1,67 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.threst.TestRun.TestThread;
+
+/**
+ * The hooks called by code instrumented with the agent in {@code org.avidj.threst.agent}, at 
+ * monitor enters and exits, volatile field accesses, and calls to locks and {@code park}. When
+ * called by a session running under a controlled schedule, a hook is a scheduling point, see
+ * {@link ConcurrentTest#seed(long)}. Otherwise, hooks return right away.
+ *
+ * <p>This class is public only so that instrumented classes in other packages can call it.
+ */
+public final class SchedulingPoints {
+  // the session executed by the current worker thread, null for other threads
+  private static final ThreadLocal<TestThread> SESSION = new ThreadLocal<>();
+
+  private SchedulingPoints() { /* hidden utility class constructor */ }
+
+  /**
+   * Binds the calling worker thread to the session it executes.
+   *
+   * @param session the session executed by the calling thread
+   */
+  static void bind(TestThread session) {
+    SESSION.set(session);
+  }
+
+  /**
+   * A scheduling point in instrumented code before an access of an unknown object.
+   */
+  public static void point() {
+    point(null);
+  }
+
+  /**
+   * A scheduling point in instrumented code before an access of the given object.
+   *
+   * @param target the monitor or lock accessed next, a constant naming a volatile field, or 
+   *     {@code null} if unknown
+   */
+  public static void point(Object target) {
+    final TestThread session = SESSION.get();
+    if ( session != null ) {
+      session.schedulingPoint(target);
+    }
+  }
+}
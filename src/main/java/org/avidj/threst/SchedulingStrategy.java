@@ -0,0 +1,71 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Decides which session runs next when a test runs under a controlled schedule, see
+ * {@link ConcurrentTest#strategy(java.util.function.Supplier)}. Under a controlled schedule only
+ * one session runs at a time. At every scheduling point, that is, at the start of each block, at
+ * each tick waited for, and when a session ends, the strategy chooses the next session among the
+ * sessions ready to run.
+ *
+ * <p>A strategy is used by a single test instance at a time. It must be deterministic given its
+ * seed, so that a schedule can be reproduced.
+ */
+public interface SchedulingStrategy {
+
+  /**
+   * Prepares the strategy for the next run.
+   *
+   * @param seed the seed of the run
+   * @param sessions the number of sessions of the test
+   */
+  void start(long seed, int sessions);
+
+  /**
+   * Chooses the session to run next.
+   *
+   * @param ready the indexes of the sessions ready to run, in ascending order
+   * @param count the number of valid entries in {@code ready}, at least 1
+   * @return the index of the session to run next, one of the sessions ready to run
+   */
+  int choose(int[] ready, int count);
+
+  /**
+   * Called right after a session was chosen, with the object the session accesses next.
+   * Scheduling points at blocks and ticks do not know the object accessed next, instrumented
+   * scheduling points name the monitor or lock accessed, or the volatile field by a constant.
+   *
+   * @param session the session chosen
+   * @param target the object the session accesses next, or {@code null} if unknown
+   */
+  default void chosen(int session, Object target) { }
+
+  /**
+   * Returns whether the strategy has no more schedules to run, e.g. because it enumerated all of
+   * them. The test ends without running further repetitions then.
+   *
+   * @return true, iff no further run is needed
+   */
+  default boolean exhausted() {
+    return false;
+  }
+}
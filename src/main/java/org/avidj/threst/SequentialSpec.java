@@ -0,0 +1,59 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A sequential model of the object under test, against which recorded operation histories are 
+ * checked for linearizability, see {@link ConcurrentTest#linearizable(SequentialSpec)}. States 
+ * are values: the model must not modify a state but return a new one, and states must implement
+ * {@code equals} and {@code hashCode}, so that the checker can tell states it already explored.
+ *
+ * @param <S> the type of the states of the model
+ */
+public interface SequentialSpec<S> {
+
+  /**
+   * @return the state before the first operation, not {@code null}
+   */
+  S initialState();
+
+  /**
+   * Applies an operation in a state.
+   *
+   * @param state the state before the operation
+   * @param operation the operation with its argument and recorded result
+   * @return the state after the operation, or {@code null} if the operation cannot return its
+   *     recorded result in the given state
+   */
+  S apply(S state, Operation operation);
+
+  /**
+   * The key of the part of the object an operation accesses. Operations on different keys do not
+   * affect each other, e.g. on different keys of a map, so the history of each key is checked on 
+   * its own, starting from the initial state. This makes checking long histories feasible.
+   *
+   * @param operation an operation
+   * @return the key the operation accesses, {@code null} if all operations access the same part
+   */
+  default Object key(Operation operation) {
+    return null;
+  }
+}
@@ -0,0 +1,104 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds back the sessions of a run until all of them are awake, then releases them at once. 
+ * Waking the workers one after the other takes several microseconds per worker, without the 
+ * barrier the first sessions may be done with short blocks before the last ones start. 
+ *
+ * <p>Sessions arriving at the barrier spin on a single volatile field for a short time, and park
+ * only if the other sessions take longer to arrive. The last session to arrive releases the 
+ * others with a single write, so spinning sessions start within nanoseconds of each other, only
+ * parked ones need to be unparked. Spinning only pays off with a processor for every session, 
+ * otherwise the spinning sessions yield to the ones still to arrive.
+ */
+class StartBarrier {
+  private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Thread[] workers;
+  private final boolean oversubscribed;
+  private final AtomicInteger arrived = new AtomicInteger();
+  // 1 while a session is about to park or parked at the barrier
+  private final AtomicIntegerArray parked;
+  // the generation of the last run released
+  private volatile int released = 0;
+
+  StartBarrier(Thread[] workers) {
+    this.workers = workers;
+    this.oversubscribed = Runtime.getRuntime().availableProcessors() < workers.length;
+    this.parked = new AtomicIntegerArray(workers.length);
+  }
+
+  /**
+   * Prepares the barrier for the next run. Only call while no session runs.
+   */
+  void reset() {
+    arrived.set(0);
+  }
+
+  /**
+   * Waits until all sessions of the run arrived.
+   *
+   * @param session the index of the calling session
+   * @param generation the generation of the run
+   */
+  void await(int session, int generation) {
+    if ( arrived.incrementAndGet() == workers.length ) {
+      released = generation;
+      for ( int i = 0; i < workers.length; i++ ) {
+        if ( parked.get(i) == 1 ) {
+          LockSupport.unpark(workers[i]);
+        }
+      }
+      return;
+    }
+    final long deadline = System.nanoTime() + SPIN_NANOS;
+    while ( released != generation ) {
+      if ( System.nanoTime() - deadline > 0 ) {
+        park(session, generation);
+        return;
+      }
+      if ( oversubscribed ) {
+        Thread.yield();
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  private void park(int session, int generation) {
+    // announce parking before the last check, so that the releasing session cannot miss it
+    parked.set(session, 1);
+    while ( released != generation ) {
+      LockSupport.park(this);
+      if ( Thread.currentThread().isInterrupted() ) {
+        break;
+      }
+    }
+    parked.set(session, 0);
+  }
+}
@@ -0,0 +1,96 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long a session may wait for a signal, while no session of the run is running, before it is
+ * considered starving. Unless a fixed threshold is configured, the threshold adapts to the test:
+ * it is a multiple of the longest wait for a signal seen in the healthy runs of the current
+ * assertion, but never below the initial threshold. Fast healthy runs therefore do not make a 
+ * single slower healthy run fail, while tests with legitimately long waits get a higher 
+ * threshold. A fixed threshold detects starvation faster.
+ */
+class StarvationThreshold {
+  static final long INITIAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2000);
+  static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(20);
+  static final int FACTOR = 10;
+  private static final long NONE = -1;
+
+  // the configured threshold, 0 if adaptive
+  private volatile long fixedNanos = 0;
+  // the longest wait seen in a healthy run, NONE if there was no healthy run yet
+  private final AtomicLong longestWait = new AtomicLong(NONE);
+
+  /**
+   * @param nanos the fixed threshold, or 0 to adapt the threshold
+   */
+  void fix(long nanos) {
+    this.fixedNanos = nanos;
+  }
+
+  /**
+   * Forgets the waits seen, at the start of an assertion.
+   */
+  void reset() {
+    longestWait.set(NONE);
+  }
+
+  /**
+   * @return the current threshold in nanoseconds
+   */
+  long nanos() {
+    final long fixed = fixedNanos;
+    if ( fixed > 0 ) {
+      return fixed;
+    }
+    final long longest = longestWait.get();
+    if ( longest == NONE ) {
+      return INITIAL_NANOS;
+    }
+    return Math.max(INITIAL_NANOS, Math.min(MAX_NANOS, longest * FACTOR));
+  }
+
+  /**
+   * Learns from a run that ended without a detected deadlock or starvation. A run in which no 
+   * wait was seen gives no evidence and leaves the threshold as it is.
+   *
+   * @param longestWaitNanos the longest time a session of the run was seen waiting for a signal,
+   *     0 if none was seen
+   */
+  void healthyRun(long longestWaitNanos) {
+    if ( longestWaitNanos <= 0 ) {
+      return;
+    }
+    longestWait.accumulateAndGet(longestWaitNanos, Math::max);
+  }
+
+  /**
+   * Learns from a wait that ended with a signal, e.g. a notification.
+   *
+   * @param waitNanos the duration of the wait
+   */
+  void signalled(long waitNanos) {
+    longestWait.accumulateAndGet(waitNanos, Math::max);
+  }
+}
@@ -0,0 +1,102 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.util.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the operations of the sessions of a concurrent test in stress mode, see 
+ * {@link ConcurrentTest#stress(java.time.Duration)}. Every session loops over its blocks until it executed
+ * the given number of operations or the given time elapsed since it started the run, whichever
+ * comes first. The latency of every operation is recorded into a histogram of the session, which
+ * has a fixed memory footprint and does not allocate. Sessions of parallel instances share the
+ * histograms.
+ */
+class StressRecorder {
+  private final long operations;
+  private final long nanos;
+  private final Histogram[] latencies;
+  private final AtomicLongArray busyNanos;
+
+  /**
+   * @param sessions the number of sessions of the test
+   * @param operations the number of operations of a session per run, 0 if not limited
+   * @param nanos the time a session executes operations per run, 0 if not limited
+   */
+  StressRecorder(int sessions, long operations, long nanos) {
+    this.operations = operations;
+    this.nanos = nanos;
+    this.latencies = new Histogram[sessions];
+    for ( int i = 0; i < sessions; i++ ) {
+      latencies[i] = new Histogram();
+    }
+    this.busyNanos = new AtomicLongArray(sessions);
+  }
+
+  /**
+   * @param executed the number of operations the session executed in the current run
+   * @param elapsedNanos the time since the session started the current run
+   * @return true, iff the session executes another operation
+   */
+  boolean continues(long executed, long elapsedNanos) {
+    return ( operations == 0 || executed < operations ) && ( nanos == 0 || elapsedNanos < nanos );
+  }
+
+  /**
+   * @param session the index of the session
+   * @param latencyNanos the time the operation took
+   */
+  void record(int session, long latencyNanos) {
+    latencies[session].record(latencyNanos);
+  }
+
+  /**
+   * @param session the index of the session
+   * @param elapsedNanos the time the session spent on operations in a run
+   */
+  void finished(int session, long elapsedNanos) {
+    busyNanos.addAndGet(session, elapsedNanos);
+  }
+
+  /**
+   * @param elapsedNanos the wall-clock time of the assertion
+   * @return the throughput and latencies of the sessions and in aggregate
+   */
+  StressReport report(long elapsedNanos) {
+    final Histogram total = new Histogram();
+    final List<StressReport.Latencies> sessions = new ArrayList<>(latencies.length);
+    for ( int i = 0; i < latencies.length; i++ ) {
+      sessions.add(latencies(latencies[i], busyNanos.get(i)));
+      total.add(latencies[i]);
+    }
+    return new StressReport(sessions, latencies(total, elapsedNanos));
+  }
+
+  private static StressReport.Latencies latencies(Histogram histogram, long elapsedNanos) {
+    return new StressReport.Latencies(histogram.count(), elapsedNanos, 
+        histogram.percentile(0.5), histogram.percentile(0.99), histogram.percentile(0.999), 
+        histogram.max());
+  }
+}
@@ -0,0 +1,135 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The throughput and the operation latencies of the sessions of a concurrent test in the stress 
+ * mode of its last assertion, see {@link ConcurrentTest#stress(Duration)}. Percentiles exceed 
+ * the exact ones by at most 12.5%.
+ */
+public final class StressReport {
+  private final List<Latencies> sessions;
+  private final Latencies total;
+
+  StressReport(List<Latencies> sessions, Latencies total) {
+    this.sessions = Collections.unmodifiableList(sessions);
+    this.total = total;
+  }
+
+  /**
+   * @return the latencies of every session, by the index of the session; the throughput of a 
+   *     session is relative to the time it spent on operations
+   */
+  public List<Latencies> sessions() {
+    return sessions;
+  }
+
+  /**
+   * @return the latencies of all operations of all sessions; the throughput is relative to the 
+   *     wall-clock time of the assertion
+   */
+  public Latencies total() {
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder("Stress report: ").append(total);
+    for ( int i = 0; i < sessions.size(); i++ ) {
+      report.append("\nsession ").append(i).append(": ").append(sessions.get(i));
+    }
+    return report.toString();
+  }
+
+  /**
+   * The number of operations executed, their throughput and latency percentiles.
+   */
+  public static final class Latencies {
+    private final long operations;
+    private final long elapsedNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    Latencies(long operations, long elapsedNanos, long p50Nanos, long p99Nanos, long p999Nanos, 
+        long maxNanos) {
+      this.operations = operations;
+      this.elapsedNanos = elapsedNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.p999Nanos = p999Nanos;
+      this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the number of operations executed
+     */
+    public long operations() {
+      return operations;
+    }
+
+    /**
+     * @return the number of operations executed per second
+     */
+    public double operationsPerSecond() {
+      return ( elapsedNanos == 0 ) ? 0 : operations * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the median latency of an operation
+     */
+    public Duration p50() {
+      return Duration.ofNanos(p50Nanos);
+    }
+
+    /**
+     * @return the 99th percentile of the latency of an operation
+     */
+    public Duration p99() {
+      return Duration.ofNanos(p99Nanos);
+    }
+
+    /**
+     * @return the 99.9th percentile of the latency of an operation
+     */
+    public Duration p999() {
+      return Duration.ofNanos(p999Nanos);
+    }
+
+    /**
+     * @return the largest latency of an operation
+     */
+    public Duration max() {
+      return Duration.ofNanos(maxNanos);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d operations (%.1f/s), p50 %d ns, p99 %d ns, p999 %d ns, max %d ns", 
+          operations, operationsPerSecond(), p50Nanos, p99Nanos, p999Nanos, maxNanos);
+    }
+  }
+}
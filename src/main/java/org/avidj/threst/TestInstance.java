@@ -0,0 +1,85 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.threst.TestRun.TestThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An isolated copy of a concurrent test. Each instance has its own test threads and its own
+ * reusable {@link TestRun} with a worker thread per session, and creates its own state for every
+ * run. Several instances of the same test can therefore execute repetitions in parallel without
+ * observing each other.
+ */
+class TestInstance implements Runnable {
+  private static final Logger LOG = LoggerFactory.getLogger(TestInstance.class);
+
+  final ConcurrentTest concurrentTest;
+  final TestRun run;
+  private final Budget budget;
+  private final Verdict verdict;
+
+  TestInstance(ConcurrentTest concurrentTest, Budget budget, Verdict verdict,
+      ObserverService observerService) {
+    this.concurrentTest = concurrentTest;
+    this.budget = budget;
+    this.verdict = verdict;
+    final TestThread[] testThreads = new TestThread[concurrentTest.sessionCount];
+    for ( int i = 0; i < testThreads.length; i++ ) {
+      testThreads[i] = concurrentTest.testThreads.get(i).copy();
+    }
+    run = new TestRun(this, testThreads, observerService);
+    run.start();
+  }
+
+  /**
+   * Executes repetitions until the budget of the test is used up, some instance failed, the
+   * strategy of a controlled schedule has no more schedules to run, or the runs stopped 
+   * exercising new interleavings.
+   */
+  @Override
+  public void run() {
+    final CoverageTracker coverage = concurrentTest.coverageTracker;
+    int repetition;
+    while ( !verdict.failed() && !exhausted() && ( coverage == null || !coverage.saturated() )
+        && ( repetition = budget.claim() ) >= 0 ) {
+      if ( LOG.isTraceEnabled() ) {
+        LOG.trace("run {}", repetition + 1);
+      }
+      run.runOnce(repetition);
+      final boolean success = verdict.check(run);
+      concurrentTest.metrics.runStarted(run.lastStartSkewNanos());
+      concurrentTest.metrics.runFinished(success, run.lastRunNanos());
+      if ( coverage != null ) {
+        coverage.record(run.interleaving.fingerprint());
+      }
+    }
+  }
+
+  boolean exhausted() {
+    return run.scheduler != null && run.scheduler.strategy().exhausted();
+  }
+
+  void shutdown() throws InterruptedException {
+    run.close();
+  }
+}
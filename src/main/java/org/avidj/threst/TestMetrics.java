@@ -0,0 +1,199 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.avidj.util.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the live metrics of a concurrent test and forwards events to its listeners. Recording
+ * is lock-free and does not allocate, metrics are recorded by the threads driving repetitions and
+ * by the observer.
+ */
+class TestMetrics implements ConcurrentTestMXBean {
+  private final List<ConcurrentTestListener> listeners = new ArrayList<>();
+  private final AtomicLong successes = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final Histogram runLatency = new Histogram();
+  private final Histogram tickLatency = new Histogram();
+  private final Histogram startSkew = new Histogram();
+  private final AtomicLongArray waitedCounts;
+  private final AtomicLongArray blockedCounts;
+  private volatile ObserverService observerService;
+
+  TestMetrics(int sessionCount) {
+    waitedCounts = new AtomicLongArray(sessionCount);
+    blockedCounts = new AtomicLongArray(sessionCount);
+  }
+
+  void addListener(ConcurrentTestListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Clears all metrics at the start of an assertion.
+   *
+   * @param observerService the observer service of the assertion
+   */
+  void reset(ObserverService observerService) {
+    this.observerService = observerService;
+    successes.set(0);
+    failures.set(0);
+    runLatency.reset();
+    tickLatency.reset();
+    startSkew.reset();
+    for ( int i = 0; i < waitedCounts.length(); i++ ) {
+      waitedCounts.set(i, 0);
+      blockedCounts.set(i, 0);
+    }
+  }
+
+  void runFinished(boolean success, long latencyNanos) {
+    ( success ? successes : failures ).incrementAndGet();
+    runLatency.record(latencyNanos);
+    for ( int i = 0, n = listeners.size(); i < n; i++ ) {
+      listeners.get(i).runFinished(success, latencyNanos);
+    }
+  }
+
+  void runStarted(long skewNanos) {
+    startSkew.record(skewNanos);
+  }
+
+  long startSkewP50Nanos() {
+    return startSkew.percentile(0.5);
+  }
+
+  void tickAdvanced(int tick, long latencyNanos) {
+    tickLatency.record(latencyNanos);
+    for ( int i = 0, n = listeners.size(); i < n; i++ ) {
+      listeners.get(i).tickAdvanced(tick, latencyNanos);
+    }
+  }
+
+  /**
+   * Adds the waits and blocks of the thread of a session seen since the last snapshot.
+   */
+  void threadSampled(int session, long waited, long blocked) {
+    waitedCounts.addAndGet(session, waited);
+    blockedCounts.addAndGet(session, blocked);
+  }
+
+  void testFinished(RunStatistics statistics) {
+    for ( int i = 0, n = listeners.size(); i < n; i++ ) {
+      listeners.get(i).testFinished(statistics);
+    }
+  }
+
+  @Override
+  public long getRepetitions() {
+    return successes.get() + failures.get();
+  }
+
+  @Override
+  public long getSuccesses() {
+    return successes.get();
+  }
+
+  @Override
+  public long getFailures() {
+    return failures.get();
+  }
+
+  @Override
+  public long getRunLatencyP50Micros() {
+    return micros(runLatency.percentile(0.5));
+  }
+
+  @Override
+  public long getRunLatencyP99Micros() {
+    return micros(runLatency.percentile(0.99));
+  }
+
+  @Override
+  public long getRunLatencyMaxMicros() {
+    return micros(runLatency.max());
+  }
+
+  @Override
+  public long getStartSkewP50Nanos() {
+    return startSkew.percentile(0.5);
+  }
+
+  @Override
+  public long getStartSkewP99Nanos() {
+    return startSkew.percentile(0.99);
+  }
+
+  @Override
+  public long getTickAdvances() {
+    return tickLatency.count();
+  }
+
+  @Override
+  public long getTickAdvanceP50Micros() {
+    return micros(tickLatency.percentile(0.5));
+  }
+
+  @Override
+  public long getTickAdvanceP99Micros() {
+    return micros(tickLatency.percentile(0.99));
+  }
+
+  @Override
+  public long getObserverPollCount() {
+    final ObserverService service = observerService;
+    return ( service == null ) ? 0 : service.pollCount();
+  }
+
+  @Override
+  public long getObserverPollCpuNanos() {
+    final ObserverService service = observerService;
+    return ( service == null ) ? 0 : service.pollCpuNanos();
+  }
+
+  @Override
+  public long[] getThreadWaitedCounts() {
+    return toArray(waitedCounts);
+  }
+
+  @Override
+  public long[] getThreadBlockedCounts() {
+    return toArray(blockedCounts);
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  private static long[] toArray(AtomicLongArray counts) {
+    final long[] array = new long[counts.length()];
+    for ( int i = 0; i < array.length; i++ ) {
+      array[i] = counts.get(i);
+    }
+    return array;
+  }
+}
@@ -25,93 +25,388 @@ import com.google.common.base.Preconditions;
 import org.avidj.threst.ConcurrentTest.Actions;
 import org.avidj.threst.ConcurrentTest.NoArgActions;
 import org.avidj.threst.ConcurrentTest.NoArgActionsWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * A single test run. It is observed
+ * A single test run. It is observed by a {@link TestThreadObserver} which advances ticks and
+ * detects deadlocks and starvation. A test run is allocated once per test instance and reset for
+ * every repetition, its worker threads and its observer stay parked between repetitions. This
+ * keeps the steady state of repeated runs free of allocations.
+ *
+ * <p>A run ending with a deadlock, starvation, or timeout may leave sessions stuck in the code
+ * under test. They are interrupted, and the workers of those still stuck after a grace period
+ * are abandoned and replaced by new ones, so that later runs have a worker for every session.
  */
 public class TestRun {
+  private static final Logger LOG = LoggerFactory.getLogger(TestRun.class);
   static final long SLEEP_INTERVAL = 5;
+  // how long sessions still running after a failed run get to end after being interrupted
+  private static final long RECOVERY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
   
-  private final List<Throwable> throwables;
-  private final CountDownLatch startFlag = new CountDownLatch(1);
+  private final Throwable[] throwables;
   private final AtomicInteger successCount = new AtomicInteger();
   private final AtomicInteger finishedCount = new AtomicInteger();
-  
+  private final AtomicInteger startedCount = new AtomicInteger();
+  // the generation of the run while a session runs, 0 otherwise; whoever resets it to 0 accounts
+  // for the end of the session in that run: the session itself, or the recovery abandoning its 
+  // worker. An abandoned worker returning late finds a later generation and accounts for nothing.
+  private final AtomicIntegerArray running;
+  private int abandonedCount = 0;
+  // the block each session executes, read by the contention profiler
+  private final int[] currentBlocks;
+  // the time each session started the current run
+  private final long[] startNanos;
+  // holds back the sessions until all are awake, null if sessions start as they are woken
+  private final StartBarrier startBarrier;
 
-  final Object lock = new Object();// { @Override public String toString() { return LOCK_NAME; } };
-  final String lockName = lock.toString();
   final ConcurrentTest concurrentTest;
+  final TestInstance instance;
+  final TestThread[] testThreads;
+  final Thread[] workers;
+  Object state;
+  // statistics, only accessed by the driving thread
+  private long runCount = 0;
+  private long setupNanos = 0;
+  private long runNanos = 0;
+  private long lastRunNanos = 0;
+  private long lastStartSkewNanos = 0;
+  private int repetition = 0;
 
-  volatile int tick = 0;
-  final PriorityQueue<Integer> ticks = new PriorityQueue<>();
+  // incremented to start the next run, workers park until it changes
+  volatile int generation = 0;
+  // the last generation the observer finished observing
+  private volatile int observedGeneration = 0;
+  // the thread driving the current run, waiting for it to be observed
+  private volatile Thread driver;
+  volatile boolean closed = false;
+
+  final TickScheduler ticks;
+  // runs the sessions one at a time under a controlled schedule, null if not controlled
+  final CooperativeScheduler scheduler;
+  // fingerprints the interleaving of the run, null if coverage is not tracked
+  final Interleaving interleaving;
+  // injects random delays, null if there is no noise
+  final Noise noise;
+  // the operations recorded by the sessions, null if linearizability is not checked
+  final History history;
+  // the latest events of the sessions and the observer, null if runs are not traced
+  final TraceRecorder trace;
 
   // Increments the tick counter when all threads are blocked, waiting, or terminated, so as to 
   // allow waiting threads to continue. Also discovers deadlocks.
-  private final TestThreadObserver threadObserver = new TestThreadObserver(this);
+  final TestThreadObserver threadObserver;
+  private final ObserverService observerService;
   
   List<Throwable> getThrowables() {
-    return Collections.unmodifiableList(throwables);
+    return Collections.unmodifiableList(Arrays.asList(throwables.clone()));
+  }
+
+  TestRun(TestInstance instance, TestThread[] testThreads, ObserverService observerService) {
+    this.instance = instance;
+    this.observerService = observerService;
+    this.concurrentTest = instance.concurrentTest;
+    this.testThreads = testThreads;
+    final int sessionCount = concurrentTest.sessionCount;
+    throwables = new Throwable[sessionCount];
+    running = new AtomicIntegerArray(sessionCount);
+    startNanos = new long[sessionCount];
+    currentBlocks = new int[sessionCount];
+    workers = new Thread[sessionCount];
+    for ( int i = 0; i < sessionCount; i++ ) {
+      final TestThread testThread = testThreads[i];
+      testThread.test = this;
+      // one worker per session, otherwise sessions would queue up behind each other
+      workers[i] = newWorker(testThread, 0);
+    }
+    ticks = new TickScheduler(workers, observerService);
+    scheduler = concurrentTest.controlled() 
+        ? new CooperativeScheduler(workers, ticks, concurrentTest.newStrategy(), 
+            concurrentTest.replayChoices())
+        : null;
+    interleaving = concurrentTest.tracksCoverage() ? new Interleaving(sessionCount) : null;
+    startBarrier = concurrentTest.usesStartBarrier() ? new StartBarrier(workers) : null;
+    noise = ( concurrentTest.noiseIntensity() > 0 ) 
+        ? new Noise(sessionCount, concurrentTest.noiseIntensity()) : null;
+    history = ( concurrentTest.sequentialSpec() != null ) ? new History(sessionCount) : null;
+    trace = ( concurrentTest.traceCapacity() > 0 ) 
+        ? new TraceRecorder(sessionCount, concurrentTest.traceCapacity()) : null;
+    threadObserver = new TestThreadObserver(this);
+    observerService.add(threadObserver);
+  }
+
+  /**
+   * Starts the worker threads. They park until the first run starts.
+   */
+  void start() {
+    for ( Thread worker : workers ) {
+      worker.start();
+    }
   }
 
-  TestRun(ConcurrentTest concurrentTest) {
-    this.concurrentTest = concurrentTest;
-    throwables = new ArrayList<>(concurrentTest.sessionCount);
-    for ( int i = 0; i < concurrentTest.sessionCount; i++ ) {
-      throwables.add(null);
+  /**
+   * Stops the worker threads once they are idle and waits a short time for each of them to
+   * terminate. Workers wedged in the code under test are daemon threads and do not keep the JVM
+   * alive.
+   * 
+   * @throws InterruptedException if interrupted while waiting for the workers to terminate
+   */
+  void close() throws InterruptedException {
+    closed = true;
+    for ( Thread worker : workers ) {
+      LockSupport.unpark(worker);
+    }
+    for ( Thread worker : workers ) {
+      worker.join(SLEEP_INTERVAL);
     }
   }
 
-  private void appendWaitFor(int tick) {
-    synchronized ( lock ) {
-      if ( this.tick == tick ) {
+  private Thread newWorker(TestThread testThread, int seen) {
+    return concurrentTest.usesVirtualThreads() 
+        ? Thread.ofVirtual().unstarted(() -> work(testThread, seen))
+        : Thread.ofPlatform().daemon().unstarted(() -> work(testThread, seen));
+  }
+
+  // Executes the given session once per run until this test run is closed or the worker is
+  // abandoned.
+  private void work(TestThread testThread, int seen) {
+    SchedulingPoints.bind(testThread);
+    final Thread self = Thread.currentThread();
+    while ( workers[testThread.index] == self && ( seen = awaitGeneration(seen) ) >= 0 ) {
+      // the replacement of a worker happens before the start of the next run
+      if ( workers[testThread.index] != self ) {
         return;
       }
-      if ( this.tick > tick ) {
-        throw new RuntimeException("Ticks expected out of order. This is a bug in your test.");
+      if ( startBarrier != null ) {
+        startBarrier.await(testThread.index, seen);
       }
-      final Integer newTick = Integer.valueOf(tick);
-      if ( ticks.contains(newTick) ) {
-        return;
+      testThread.run(seen);
+      // an interrupt meant to end a stuck session must not leak into the next run
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Parks the calling thread until the next run starts.
+   * 
+   * @param seen the last generation seen by the caller
+   * @return the new generation, or -1 if this test run was closed
+   */
+  private int awaitGeneration(int seen) {
+    int current;
+    while ( ( current = generation ) == seen ) {
+      if ( closed ) {
+        return -1;
       }
-      // TODO: INSERT (SORT) TICK AT CORRECT POSITION!
-      ticks.add(newTick);
+      LockSupport.park(this);
     }
+    return closed ? -1 : current;
   }
 
-  void runOnce() {
-    // start the threads, actually they will wait for the start flag
-    for ( TestThread thread : concurrentTest.testThreads ) {
-      thread.test = this;
-      concurrentTest.pool.execute(thread);
+  // the start of the run publishes the reset to the workers and the observer
+  private void reset() {
+    Arrays.fill(throwables, null);
+    successCount.set(0);
+    finishedCount.set(0);
+    startedCount.set(0);
+    ticks.reset();
+    if ( scheduler != null ) {
+      scheduler.reset(concurrentTest.runSeed(repetition));
+    }
+    if ( interleaving != null ) {
+      interleaving.reset();
+    }
+    if ( startBarrier != null ) {
+      startBarrier.reset();
     }
+    if ( noise != null ) {
+      noise.reset(concurrentTest.noiseSeed(), repetition);
+    }
+    if ( history != null ) {
+      history.reset();
+    }
+    if ( trace != null ) {
+      trace.reset();
+    }
+    threadObserver.reset();
+    state = concurrentTest.newState();
+  }
+
+  /**
+   * Wakes up the observer to reconsider the state of this run.
+   */
+  void signalObserver() {
+    observerService.signal();
+  }
+
+  void runOnce() {
+    runOnce(0);
+  }
+
+  /**
+   * Executes a single run.
+   * 
+   * @param repetition the index of the repetition, determines the seed of a controlled schedule
+   */
+  void runOnce(int repetition) {
+    this.repetition = repetition;
+    driver = Thread.currentThread();
+    final long setup = System.nanoTime();
+    reset();
+    final long start = System.nanoTime();
+    setupNanos += start - setup;
     // give all test threads the start signal
-    startFlag.countDown();
-    new Thread(threadObserver).start();
+    generation++;
+    for ( Thread worker : workers ) {
+      LockSupport.unpark(worker);
+    }
+    signalObserver();
     try {
       awaitFinished();
+      if ( hasAssertionError() ) {
+        recover();
+      }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
+    lastRunNanos = System.nanoTime() - start;
+    lastStartSkewNanos = startSkew();
+    runNanos += lastRunNanos;
+    runCount++;
+  }
+
+  // Interrupts the sessions still running after the run failed, and replaces the workers of 
+  // those that do not end within a grace period.
+  private void recover() throws InterruptedException {
+    boolean stuck = false;
+    for ( int i = 0; i < workers.length; i++ ) {
+      if ( running.get(i) == generation ) {
+        workers[i].interrupt();
+        stuck = true;
+      }
+    }
+    final long deadline = System.nanoTime() + RECOVERY_NANOS;
+    while ( stuck && System.nanoTime() - deadline < 0 ) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+      if ( Thread.interrupted() ) {
+        throw new InterruptedException();
+      }
+      stuck = false;
+      for ( int i = 0; i < workers.length && !stuck; i++ ) {
+        stuck = running.get(i) == generation;
+      }
+    }
+    for ( int i = 0; stuck && i < workers.length; i++ ) {
+      if ( running.compareAndSet(i, generation, 0) ) {
+        LOG.warn("abandoning worker {} stuck in {}", workers[i].getName(), workers[i].getState());
+        workers[i] = newWorker(testThreads[i], generation);
+        if ( concurrentTest.jfr != null ) {
+          concurrentTest.jfr.register(workers[i], i);
+        }
+        workers[i].start();
+        abandonedCount++;
+      }
+    }
+  }
+
+  /**
+   * @param session the index of a session
+   * @return the index of the block the session executes or executed last
+   */
+  int currentBlock(int session) {
+    return currentBlocks[session];
+  }
+
+  /**
+   * @return the number of workers abandoned because they were stuck after a failed run
+   */
+  int abandonedCount() {
+    return abandonedCount;
+  }
+
+  /**
+   * @param session the index of a session
+   * @return true, iff the session has not ended in the current run
+   */
+  boolean running(int session) {
+    return running.get(session) == generation;
+  }
+
+  private long startSkew() {
+    long first = Long.MAX_VALUE;
+    long last = Long.MIN_VALUE;
+    for ( long nanos : startNanos ) {
+      first = Math.min(first, nanos);
+      last = Math.max(last, nanos);
+    }
+    return last - first;
+  }
+
+  /**
+   * @return the time in nanoseconds between the first and the last session starting the last run
+   */
+  long lastStartSkewNanos() {
+    return lastStartSkewNanos;
+  }
+
+  /**
+   * @return the number of runs executed
+   */
+  long runCount() {
+    return runCount;
+  }
+
+  /**
+   * @return the total time in nanoseconds spent preparing runs
+   */
+  long setupNanos() {
+    return setupNanos;
+  }
+
+  /**
+   * @return the time in nanoseconds from starting the last run until it was observed finished
+   */
+  long lastRunNanos() {
+    return lastRunNanos;
+  }
+
+  /**
+   * @return the total time in nanoseconds from starting runs until they were observed finished
+   */
+  long runNanos() {
+    return runNanos;
   }
 
   private void awaitFinished() throws InterruptedException {
-    synchronized ( lock ) {
-      while ( finishedCount.get() < concurrentTest.sessionCount 
-        && threadObserver.getAssertionError() == null ) {
-        lock.wait();
+    // also wait for the observer to become idle, so that the next run can safely be reset
+    while ( observedGeneration != generation ) {
+      LockSupport.park(this);
+      if ( Thread.interrupted() ) {
+        throw new InterruptedException();
       }
     }
   }
 
+  /**
+   * Called by the observer when it finished observing a run.
+   * 
+   * @param generation the generation of the run observed
+   */
+  void observed(int generation) {
+    observedGeneration = generation;
+    LockSupport.unpark(driver);
+  }
+
   /**
    * Returns whether all test threads were successful.
    * 
@@ -124,6 +419,25 @@ public class TestRun {
   boolean finished() {
     return finishedCount.get() == concurrentTest.sessionCount || hasAssertionError();
   }
+
+  /**
+   * @return true, iff all sessions started the current run
+   */
+  boolean started() {
+    return startedCount.get() == concurrentTest.sessionCount;
+  }
+
+  /**
+   * @return true, iff a session failed or the observer failed the current run
+   */
+  boolean failed() {
+    // a successful session is counted as a success before it is counted as finished
+    return finishedCount.get() > successCount.get() || hasAssertionError();
+  }
+
+  int finishedCount() {
+    return finishedCount.get();
+  }
   
   /**
    * The number of successful test threads. That is, the number of threads that did not fail with
@@ -144,11 +458,27 @@ public class TestRun {
   }
   
   public static class TestThread implements Runnable {
-    private final List<Actions> blocks = new ArrayList<>();
+    private final List<Actions> blocks;
     private int index;
     private TestRun test;
 
     TestThread() {
+      this.blocks = new ArrayList<>();
+    }
+
+    private TestThread(TestThread prototype) {
+      this.blocks = prototype.blocks;
+      this.index = prototype.index;
+    }
+
+    /**
+     * Creates a copy of this test thread that executes the same blocks but can take part in
+     * another test instance.
+     * 
+     * @return a copy of this test thread
+     */
+    TestThread copy() {
+      return new TestThread(this);
     }
     
     void setIndex(int index) {
@@ -171,22 +501,155 @@ public class TestRun {
 
     @Override
     public void run() {
+      run(test.generation);
+    }
+
+    /**
+     * Executes the blocks of this session in a run.
+     *
+     * @param generation the generation of the run
+     */
+    void run(int generation) {
+      final TestRun run = test;
+      final CooperativeScheduler scheduler = run.scheduler;
+      final StressRecorder stress = run.concurrentTest.stress;
+      final long start = System.nanoTime();
+      run.startNanos[index] = start;
+      run.running.set(index, generation);
+      run.startedCount.getAndIncrement();
+      Throwable failure = null;
       try {
-        test.startFlag.await();
-        for ( Actions block : blocks ) {
-          block.execute(this);
+        if ( stress == null ) {
+          executeBlocks(run);
+        } else {
+          stress(run, stress, start);
         }
-        test.successCount.getAndIncrement();
       } catch ( Throwable t ) {
-        test.throwables.set(index, t);
+        failure = t;
+        if ( run.trace != null ) {
+          run.trace.record(index, TraceEvent.SESSION_FAILED, run.currentBlocks[index]);
+        }
       } finally {
-        test.finishedCount.getAndIncrement();
-        synchronized ( test.lock ) {
-          test.lock.notify();
+        // an abandoned worker must not account for a later run
+        if ( run.running.compareAndSet(index, generation, 0) ) {
+          if ( failure == null ) {
+            run.successCount.getAndIncrement();
+          } else {
+            run.throwables[index] = failure;
+          }
+          if ( scheduler != null ) {
+            // before the run may be considered finished and reset
+            scheduler.finish(index);
+          }
+          run.finishedCount.getAndIncrement();
+          run.signalObserver();
         }
       }
     }
 
+    private void executeBlocks(TestRun run) throws Exception {
+      final CooperativeScheduler scheduler = run.scheduler;
+      final Interleaving interleaving = run.interleaving;
+      final Noise noise = run.noise;
+      final TraceRecorder trace = run.trace;
+      for ( int i = 0, n = blocks.size(); i < n; i++ ) {
+        if ( scheduler != null ) {
+          scheduler.point(index);
+        } else if ( noise != null ) {
+          noise.inject(index);
+        }
+        run.currentBlocks[index] = i;
+        if ( trace != null ) {
+          trace.record(index, TraceEvent.BLOCK_STARTED, i);
+        }
+        blocks.get(i).execute(this);
+        if ( trace != null ) {
+          trace.record(index, TraceEvent.BLOCK_ENDED, i);
+        }
+        if ( interleaving != null ) {
+          interleaving.blockCompleted(index, i);
+        }
+      }
+    }
+
+    // Executes the blocks as one operation after the other until the stress limits are reached, 
+    // the run failed, or the session is interrupted to end it.
+    private void stress(TestRun run, StressRecorder stress, long start) throws Exception {
+      long now = start;
+      long operations = 0;
+      try {
+        while ( stress.continues(operations, now - start) && !run.failed() 
+            && !Thread.currentThread().isInterrupted() ) {
+          executeBlocks(run);
+          final long end = System.nanoTime();
+          stress.record(index, end - now);
+          now = end;
+          operations++;
+        }
+      } finally {
+        stress.finished(index, now - start);
+      }
+    }
+
+    /**
+     * A scheduling point inside a block, reached by instrumented code under test.
+     * 
+     * @param target the object accessed next, or {@code null} if unknown
+     */
+    void schedulingPoint(Object target) {
+      final TestRun run = test;
+      if ( run == null ) {
+        return;
+      }
+      if ( run.scheduler != null ) {
+        run.scheduler.point(index, target);
+      } else if ( run.noise != null ) {
+        run.noise.inject(index);
+      }
+    }
+
+    /**
+     * Executes an operation on the object under test and records its invocation and response, 
+     * if the test checks the linearizability of the operations, see 
+     * {@link ConcurrentTest#linearizable(SequentialSpec)}. An exception thrown by the operation
+     * is recorded as its result and rethrown.
+     *
+     * @param <R> the type of the result
+     * @param name the name of the operation, e.g. "put"
+     * @param argument the argument of the operation, possibly {@code null}
+     * @param operation executes the operation
+     * @return the result of the operation
+     * @throws Exception if the operation throws an exception
+     */
+    public <R> R record(String name, Object argument, Callable<R> operation) throws Exception {
+      final History history = test.history;
+      if ( history == null ) {
+        return operation.call();
+      }
+      final long invoked = history.tick();
+      final R result;
+      try {
+        result = operation.call();
+      } catch ( Exception e ) {
+        history.add(new Operation(index, name, argument, e, invoked, history.tick()));
+        throw e;
+      }
+      history.add(new Operation(index, name, argument, result, invoked, history.tick()));
+      return result;
+    }
+
+    /**
+     * Returns the state of the current run as created by the factory given to
+     * {@link ConcurrentTest#instances(java.util.function.Supplier)}.
+     * 
+     * @param <S> the type of the state
+     * @return the state of the current run, or {@code null} if the test has no state factory
+     */
+    @SuppressWarnings("unchecked")
+    public <S> S state() {
+      return (S) test.state;
+    }
+
     /**
      * Wait for the given tick. Ticks must be waited for in order, gaps are fine.
      * @param tick the tick to wait for
@@ -194,15 +657,29 @@ public class TestRun {
      */
     public void waitFor(int tick) throws IllegalArgumentException {
       Preconditions.checkArgument(tick >= 0, "ticks must be > 0");
-      test.appendWaitFor(tick);
+      final CooperativeScheduler scheduler = test.scheduler;
+      if ( test.interleaving != null ) {
+        test.interleaving.tickArrived(index, tick);
+      }
+      if ( scheduler != null ) {
+        scheduler.beforeTick(index, tick);
+      }
+      if ( test.trace != null ) {
+        test.trace.record(index, TraceEvent.TICK_AWAITED, tick);
+      }
       try {
-        synchronized ( test.lock ) {
-          while ( test.tick < tick ) {
-            test.lock.wait();
-          }
-        }
+        test.ticks.await(index, tick);
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
+        return;
+      }
+      if ( test.trace != null ) {
+        test.trace.record(index, TraceEvent.TICK_RESUMED, tick);
+      }
+      if ( scheduler != null ) {
+        scheduler.point(index);
+      } else if ( test.noise != null ) {
+        test.noise.inject(index);
       }
     }
   }
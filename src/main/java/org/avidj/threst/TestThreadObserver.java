@@ -28,80 +28,262 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-class TestThreadObserver implements Runnable {
+/**
+ * Observes the runs of a single test instance. Advances the tick when all sessions wait for it,
+ * and detects deadlocks and starvation. Observers do not have threads of their own, the
+ * {@link ObserverService} of a test steps the observers of all its instances.
+ */
+class TestThreadObserver {
   private static final Logger LOG = LoggerFactory.getLogger(TestThreadObserver.class);
-  private static final Set<Thread.State> WAIT_STATES = Collections.unmodifiableSet(EnumSet.of(
-      Thread.State.TIMED_WAITING, Thread.State.WAITING));
+  private static final long NOT_WAITING = -1;
+  private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(TestRun.SLEEP_INTERVAL);
 
   private final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
   private final TestRun testRun;
-  private List<ThreadInfo> deadlock;
+  private List<List<ThreadInfo>> deadlocks;
   private volatile AssertionError assertionError;
-  private long[] waitCounts;
-  private long[] waitTimes;
+  // the waited count and the start of the wait of each session waiting for a signal, the count
+  // is NOT_WAITING while a session is not waiting
+  private final long[] waitCounts;
+  private final long[] waitTimes;
+  // the longest wait for a signal seen in the current run
+  private long longestWait = 0;
+  // the waited and blocked counts of the threads in the previous snapshot
+  private final long[] sampledWaits;
+  private final long[] sampledBlocks;
+  private final ThreadSnapshot snapshot;
+  private final WaitForGraph waitForGraph;
+  private final boolean cpuTimeEnabled;
+  private volatile long pollCount = 0;
+  private volatile long pollCpuNanos = 0;
+  // only accessed by the observer service
+  private int generation = 0;
+  private boolean observing = false;
+  private long nextPoll;
+  private long runStart;
+  // samples the contention of the sessions, null unless profiling
+  private final ContentionProfiler.Sampler sampler;
+  private long nextSample;
 
   TestThreadObserver(TestRun testRun) {
     this.testRun = testRun;
+    this.waitCounts = new long[testRun.concurrentTest.sessionCount];
+    this.waitTimes = new long[testRun.concurrentTest.sessionCount];
+    this.sampledWaits = new long[testRun.concurrentTest.sessionCount];
+    this.sampledBlocks = new long[testRun.concurrentTest.sessionCount];
+    this.snapshot = new ThreadSnapshot(threadMxBean, testRun.workers);
+    this.waitForGraph = new WaitForGraph(testRun.workers.length);
+    this.cpuTimeEnabled = threadMxBean.isCurrentThreadCpuTimeSupported() 
+        && threadMxBean.isThreadCpuTimeEnabled();
+    final ContentionProfiler profiler = testRun.concurrentTest.profiler;
+    this.sampler = ( profiler == null ) 
+        ? null : profiler.sampler(testRun.concurrentTest.sessionCount);
+  }
+
+  /**
+   * @return the number of times this observer polled the worker threads
+   */
+  long pollCount() {
+    return pollCount;
+  }
+
+  /**
+   * @return the total CPU time in nanoseconds this observer spent polling, 0 if not supported
+   */
+  long pollCpuNanos() {
+    return pollCpuNanos;
   }
   
   AssertionError getAssertionError() {
     return assertionError;
   }
-  
-  @Override
-  public void run() {
-    this.waitCounts = new long[testRun.concurrentTest.threads.size()];
-    this.waitTimes = new long[testRun.concurrentTest.threads.size()];
-    Arrays.fill(waitCounts, 0);
+
+  /**
+   * Prepares this observer for the next run. Only call while the observer is idle.
+   */
+  void reset() {
+    Arrays.fill(waitCounts, NOT_WAITING);
     Arrays.fill(waitTimes, 0);
-    while ( !testRun.finished() ) {
-      if ( noThreadsRunning() ) {
-        if ( waitingForTick() ) {
-          tick();
+    longestWait = 0;
+    deadlocks = null;
+    assertionError = null;
+  }
+
+  /**
+   * Takes a single step of observing the current run. Starts observing a run as soon as it is
+   * started and acknowledges the end of the run to the test run.
+   *
+   * @param now the current {@link System#nanoTime()}
+   * @return whether the run is still being observed
+   */
+  boolean observe(long now) {
+    final int current = testRun.generation;
+    if ( current != generation ) {
+      generation = current;
+      observing = true;
+      nextPoll = now + POLL_INTERVAL;
+      runStart = now;
+      if ( sampler != null ) {
+        sampler.startRun();
+        nextSample = now;
+      }
+    }
+    if ( !observing ) {
+      return false;
+    }
+    final long timeout = testRun.concurrentTest.timeoutNanos();
+    if ( timeout > 0 && now - runStart > timeout && assertionError == null ) {
+      fail(TraceEvent.TIMED_OUT, -1, new AssertionError(timedOut(now - runStart)));
+    }
+    if ( testRun.finished() ) {
+      if ( assertionError == null ) {
+        testRun.concurrentTest.starvation.healthyRun(longestWait);
+      }
+      observing = false;
+      testRun.observed(generation);
+      return false;
+    }
+    if ( sampler != null && now - nextSample >= 0 && testRun.started() ) {
+      snapshot.take();
+      sampler.sample(snapshot, testRun);
+      nextSample = now + SAMPLE_INTERVAL;
+    }
+    // sessions report when they park on a tick or finish, so most ticks need no polling
+    if ( !tickIfAllParked() && now - nextPoll >= 0 ) {
+      // fall back to polling for sessions blocked or waiting inside the code under test
+      poll();
+      nextPoll = System.nanoTime() + POLL_INTERVAL;
+    }
+    return true;
+  }
+
+  /**
+   * @return the {@link System#nanoTime()} at which the run must be polled next
+   */
+  long nextPoll() {
+    return ( sampler == null || nextSample - nextPoll > 0 ) ? nextPoll : nextSample;
+  }
+
+  private void poll() {
+    // cheap check first, only take a snapshot if it may be needed
+    if ( !testRun.started() || !noThreadsRunning() ) {
+      return;
+    }
+    final long start = cpuTime();
+    final int resumes = testRun.ticks.resumes();
+    snapshot.take();
+    if ( testRun.concurrentTest.jfr == null ) {
+      // otherwise the Flight Recorder reports every wait and block to the metrics
+      sample();
+    }
+    if ( testRun.interleaving != null ) {
+      recordBlocked();
+    }
+    if ( testRun.scheduler != null && testRun.scheduler.detachBlockedHolder(snapshot) ) {
+      // the token was passed on, some session is about to run
+    } else if ( snapshot.noneRunnable() ) {
+      if ( testRun.ticks.advanceIfParked(resumes) ) {
+        tickAdvanced();
+      } else {
+        // deadlock?
+        deadlocks = waitForGraph.findCycles(snapshot);
+        if ( !deadlocks.isEmpty() ) {
+          fail(TraceEvent.DEADLOCK_DETECTED, -1, new AssertionError(describe(deadlocks)));
         } else {
-          if ( noThreadsRunning() ) {
-            // deadlock?
-            deadlock = findJavaLevelDeadlock();
-            if ( deadlock != null ) {
-              assertionError = 
-                  new AssertionError("\nDeadlock detected:\n" + Strings.join("", deadlock));
-            }
-            // starvation? 
-            ThreadInfo starving = findStarving(waitCounts, waitTimes);
-            if ( starving != null ) {
-              assertionError = new AssertionError("Threads are starving. Missed signal?");
-            }
+          // starvation? 
+          final long now = System.nanoTime();
+          final long threshold = testRun.concurrentTest.starvation.nanos();
+          final int starving = findStarving(now, threshold);
+          if ( starving >= 0 ) {
+            fail(TraceEvent.STARVATION_DETECTED, starving, 
+                new AssertionError(starving(starving, now, threshold)));
           }
         }
       }
-      try {
-        Thread.sleep(TestRun.SLEEP_INTERVAL);
-      } catch (InterruptedException e) {
-        // this cannot happen
+    }
+    pollCpuNanos += cpuTime() - start;
+    pollCount++;
+  }
+
+  private String timedOut(long elapsedNanos) {
+    StringBuilder message = new StringBuilder("Run timed out after ")
+        .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms, sessions still running:");
+    for ( int i = 0; i < testRun.workers.length; i++ ) {
+      if ( testRun.running(i) ) {
+        final Thread worker = testRun.workers[i];
+        message.append("\n  session ").append(i).append(' ').append(worker.getState());
+        final StackTraceElement[] stack = worker.getStackTrace();
+        if ( stack.length > 0 ) {
+          message.append(" at ").append(stack[0]);
+        }
       }
     }
-    synchronized ( testRun.lock ) {
-      testRun.lock.notifyAll();
+    return message.toString();
+  }
+
+  private void fail(TraceEvent decision, int argument, AssertionError error) {
+    if ( testRun.trace != null ) {
+      testRun.trace.record(testRun.trace.observer(), decision, argument);
+    }
+    assertionError = error;
+    if ( testRun.scheduler != null ) {
+      // let the sessions that are not stuck run to their end
+      testRun.scheduler.abort();
     }
   }
-  
-  private void tick() {
-    if ( !testRun.ticks.isEmpty() ) {
-      synchronized ( testRun.lock ) {
-        testRun.tick = testRun.ticks.remove().intValue();
-        testRun.lock.notifyAll();
+
+  private long cpuTime() {
+    return cpuTimeEnabled ? threadMxBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  // Advances the tick as soon as every session that did not finish yet is parked on a tick.
+  private boolean tickIfAllParked() {
+    if ( !testRun.ticks.advanceIfAllParked(testRun.finishedCount()) ) {
+      return false;
+    }
+    tickAdvanced();
+    return true;
+  }
+
+  private void tickAdvanced() {
+    final TickScheduler ticks = testRun.ticks;
+    if ( testRun.trace != null ) {
+      testRun.trace.record(testRun.trace.observer(), TraceEvent.TICK_ADVANCED, ticks.tick);
+    }
+    testRun.concurrentTest.metrics.tickAdvanced(ticks.tick, System.nanoTime() - ticks.lastParked());
+  }
+
+  // Reports the waits and blocks since the previous snapshot to the metrics of the test.
+  private void sample() {
+    for ( int i = 0, n = snapshot.size(); i < n; i++ ) {
+      // counts start over if a worker thread was replaced
+      final long waited = snapshot.waitedCounts[i] - sampledWaits[i];
+      final long blocked = snapshot.blockedCounts[i] - sampledBlocks[i];
+      testRun.concurrentTest.metrics.threadSampled(i, 
+          ( waited < 0 ) ? snapshot.waitedCounts[i] : waited, 
+          ( blocked < 0 ) ? snapshot.blockedCounts[i] : blocked);
+      sampledWaits[i] = snapshot.waitedCounts[i];
+      sampledBlocks[i] = snapshot.blockedCounts[i];
+    }
+  }
+
+  // Records which sessions are blocked on locks held by which sessions.
+  private void recordBlocked() {
+    for ( int i = 0, n = snapshot.size(); i < n; i++ ) {
+      final long owner = snapshot.lockOwnerIds[i];
+      if ( owner != ThreadSnapshot.NO_OWNER && ( snapshot.states[i] == Thread.State.BLOCKED 
+          || snapshot.states[i] == Thread.State.WAITING ) ) {
+        testRun.interleaving.blocked(i, snapshot.indexOf(owner));
       }
     }
   }
 
   private boolean noThreadsRunning() {
-    for ( Thread t : testRun.concurrentTest.threads ) {
+    for ( Thread t : testRun.workers ) {
       if ( t.getState() == Thread.State.RUNNABLE ) {
         return false;
       }
@@ -109,100 +291,64 @@ class TestThreadObserver implements Runnable {
     return true;
   }
 
-  private boolean waitingForTick() {
-    assert ( waitCounts.length == testRun.concurrentTest.threads.size() );
-    int waiting = 0;
-    int newT = 0;
-    int blocked = 0;
-    int runnable = 0;
-    int terminated = 0;
-    for ( Thread t : testRun.concurrentTest.threads ) {
-      final ThreadInfo info = threadMxBean.getThreadInfo(t.getId());
-      
-      switch ( t.getState() ) {
-        case TIMED_WAITING:
-        case WAITING:
-          LOG.trace(toString(info));
-          if ( testRun.lockName.equals(info.getLockName()) ) {
-            // thread is waiting for this thread, i.e., for the tick
-            return true;
+  // Returns the index of a thread waiting for a signal for longer than the threshold, or -1 if
+  // none is starving. Timed waits end by themselves and are not considered, neither are waits 
+  // in the harness, e.g. of sessions that finished or wait for a tick.
+  private int findStarving(long now, long threshold) {
+    assert ( waitCounts.length == snapshot.size() );
+    for ( int i = 0, n = snapshot.size(); i < n; i++ ) {
+      if ( snapshot.states[i] == Thread.State.WAITING && testRun.running(i) 
+          && !snapshot.waitsForHarness(i) ) {
+        if ( LOG.isTraceEnabled() ) {
+          LOG.trace(toString(snapshot.info(i)));
+        }
+        if ( waitCounts[i] != snapshot.waitedCounts[i] ) {
+          // a new wait started since the last poll
+          waitCounts[i] = snapshot.waitedCounts[i];
+          waitTimes[i] = now;
+        } else {
+          final long waited = now - waitTimes[i];
+          longestWait = Math.max(longestWait, waited);
+          if ( waited > threshold ) {
+            return i;
           }
-          waiting++;
-          break;
-        case NEW:
-          newT++;
-          break;
-        case RUNNABLE:
-          runnable++;
-          break;
-        case BLOCKED:
-          blocked++;
-          break;
-        case TERMINATED:
-          terminated++;
-          break;
-        default:
-          throw new RuntimeException("Unknown thread state.");
-      }
-    }
-    LOG.trace("waiting: {}, newT: {}, blocked: {}, runnable: {}, terminated: {}",
-        waiting, newT, blocked, runnable, terminated);
-    return false;
-  }
-  
-  private ThreadInfo findStarving(long[] waitCounts, long[] waitTimes) {
-    assert ( waitCounts.length == testRun.concurrentTest.threads.size() );
-    for ( int i = 0, n = testRun.concurrentTest.threads.size(); i < n; i++ ) {
-      Thread thread = testRun.concurrentTest.threads.get(i);
-      final ThreadInfo info = threadMxBean.getThreadInfo(thread.getId());
-      if ( WAIT_STATES.contains(thread.getState()) ) {
-        LOG.trace(toString(info));
-        if ( waitCounts[i] < info.getWaitedCount() ) {
-          waitCounts[i] = info.getWaitedCount();
-          waitTimes[i] = System.currentTimeMillis();
-        } else if ( System.currentTimeMillis() - waitTimes[i] > 2000 ) { 
-          // otherwise it's relaxing in the pool
-          return info;
         }
+      } else {
+        waitCounts[i] = NOT_WAITING;
       }
     }
-    return null;
+    return -1;
+  }
+
+  private String starving(int session, long now, long threshold) {
+    final ThreadInfo info = snapshot.info(session);
+    return String.format("Threads are starving. Missed signal? Session %d waits on %s for %d ms "
+        + "without a signal, the starvation threshold is %d ms", session, 
+        ( info == null || info.getLockName() == null ) ? "an unknown object" : info.getLockName(),
+        TimeUnit.NANOSECONDS.toMillis(now - waitTimes[session]), 
+        TimeUnit.NANOSECONDS.toMillis(threshold));
   }
 
   private String toString(ThreadInfo info) {
+    if ( info == null ) {
+      return "no thread info";
+    }
     return new StringBuilder()
-        .append("testRun.lockName=").append(testRun.lockName)
-        .append(", info.getLockName()=").append(info.getLockName())
+        .append("info.getLockName()=").append(info.getLockName())
         .append(", ownerName=").append(info.getLockOwnerName())
         .append(", ownerId=").append(info.getLockOwnerId())
         .append(", waitedCount=").append(info.getWaitedCount())
         .toString();
   }
 
-  private List<ThreadInfo> findJavaLevelDeadlock() {
-    for ( Thread t : testRun.concurrentTest.threads ) {
-      if ( t.getState() == Thread.State.BLOCKED ) {
-        List<ThreadInfo> loop = new LinkedList<ThreadInfo>();
-        ThreadInfo currentInfo = threadMxBean.getThreadInfo(t.getId());
-        loop.add(currentInfo);
-        Long blockerId;
-        do {
-          blockerId = currentInfo.getLockOwnerId();
-          if ( blockerId == -1 ) {
-            // not blocked anymore
-            break;
-          }
-          currentInfo = threadMxBean.getThreadInfo(blockerId);
-          loop.add(currentInfo);
-        } while ( 
-            currentInfo.getThreadState() == Thread.State.BLOCKED 
-            && loop.get(0).getThreadId() != blockerId.longValue() );
-        
-        if ( currentInfo.getThreadState() == Thread.State.BLOCKED ) {
-          return Collections.unmodifiableList(loop.subList(0, loop.size() - 1));
-        }
+  private static String describe(List<List<ThreadInfo>> deadlocks) {
+    StringBuilder message = new StringBuilder("\nDeadlock detected:\n");
+    for ( int i = 0, n = deadlocks.size(); i < n; i++ ) {
+      if ( i > 0 ) {
+        message.append('\n');
       }
+      message.append(Strings.join("", deadlocks.get(i)));
     }
-    return null;
+    return message.toString();
   }
-}
\ No newline at end of file
+}
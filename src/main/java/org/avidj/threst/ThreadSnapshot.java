@@ -0,0 +1,212 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * A consistent view of the worker threads of a test run. The snapshot is taken with a single
+ * bulk call to the {@link ThreadMXBean}, all detectors of a poll base their decisions on the same
+ * snapshot. The thread ids and the per-thread values copied from the snapshot are kept in arrays
+ * that are reused across polls. The bean itself still allocates a new array of
+ * {@link ThreadInfo} objects on every call.
+ *
+ * <p>The bean does not know virtual threads. For them, the snapshot only contains the thread
+ * states, lock owners and waited and blocked counts are not available.
+ */
+class ThreadSnapshot {
+  static final long NO_OWNER = -1;
+  // waits on objects of the harness itself, subpackages belong to the code under test
+  private static final String HARNESS_PACKAGE = "org.avidj.threst";
+
+  private final ThreadMXBean threadMxBean;
+  private final Thread[] threads;
+  private final boolean virtual;
+  private final long[] ids;
+  // open addressing table from thread id to index, rebuilt only when the threads change
+  private final long[] slotIds;
+  private final int[] slotIndexes;
+  // the thread infos of the last snapshot, null for virtual threads
+  private ThreadInfo[] infos;
+  final Thread.State[] states;
+  final long[] lockOwnerIds;
+  final long[] waitedCounts;
+  final long[] blockedCounts;
+  // in milliseconds, -1 unless thread contention monitoring is enabled
+  final long[] waitedTimes;
+  final long[] blockedTimes;
+
+  ThreadSnapshot(ThreadMXBean threadMxBean, Thread[] threads) {
+    this.threadMxBean = threadMxBean;
+    this.threads = threads;
+    this.virtual = threads.length > 0 && threads[0].isVirtual();
+    final int n = threads.length;
+    this.ids = new long[n];
+    final int slots = Integer.highestOneBit(Math.max(1, n) * 4 - 1) << 1;
+    this.slotIds = new long[slots];
+    this.slotIndexes = new int[slots];
+    this.states = new Thread.State[n];
+    this.lockOwnerIds = new long[n];
+    this.waitedCounts = new long[n];
+    this.blockedCounts = new long[n];
+    this.waitedTimes = new long[n];
+    this.blockedTimes = new long[n];
+  }
+
+  /**
+   * Takes a new snapshot of all threads.
+   */
+  void take() {
+    if ( virtual ) {
+      takeVirtual();
+      return;
+    }
+    boolean changed = false;
+    for ( int i = 0; i < threads.length; i++ ) {
+      final long id = threads[i].threadId();
+      changed |= ( ids[i] != id );
+      ids[i] = id;
+    }
+    if ( changed ) {
+      index();
+    }
+    infos = threadMxBean.getThreadInfo(ids);
+    for ( int i = 0; i < infos.length; i++ ) {
+      final ThreadInfo info = infos[i];
+      if ( info == null ) {
+        // the thread is not alive anymore
+        states[i] = Thread.State.TERMINATED;
+        lockOwnerIds[i] = NO_OWNER;
+        waitedCounts[i] = 0;
+        blockedCounts[i] = 0;
+        waitedTimes[i] = -1;
+        blockedTimes[i] = -1;
+      } else {
+        states[i] = info.getThreadState();
+        lockOwnerIds[i] = info.getLockOwnerId();
+        waitedCounts[i] = info.getWaitedCount();
+        blockedCounts[i] = info.getBlockedCount();
+        waitedTimes[i] = info.getWaitedTime();
+        blockedTimes[i] = info.getBlockedTime();
+      }
+    }
+  }
+
+  private void takeVirtual() {
+    for ( int i = 0; i < threads.length; i++ ) {
+      states[i] = threads[i].getState();
+      lockOwnerIds[i] = NO_OWNER;
+      waitedCounts[i] = 0;
+      blockedCounts[i] = 0;
+      waitedTimes[i] = -1;
+      blockedTimes[i] = -1;
+    }
+  }
+
+  /**
+   * @param i the index of the thread
+   * @return the id of the thread at the given index when the snapshot was taken, 0 for virtual
+   *     threads
+   */
+  long id(int i) {
+    return ids[i];
+  }
+
+  int size() {
+    return threads.length;
+  }
+
+  /**
+   * @param i the index of the thread
+   * @return true, iff the thread waits for the harness itself, e.g. for a tick or the next run
+   */
+  boolean waitsForHarness(int i) {
+    final ThreadInfo info = info(i);
+    return info != null && info.getLockName() != null && isHarness(info.getLockName());
+  }
+
+  /**
+   * @param name the name of a class, or of a lock as in {@link ThreadInfo#getLockName()}
+   * @return true, iff the class belongs to the harness rather than to the code under test
+   */
+  static boolean isHarness(String name) {
+    final int at = name.indexOf('@');
+    final int dot = name.lastIndexOf('.', ( at < 0 ) ? name.length() : at);
+    return dot > 0 && name.substring(0, dot).equals(HARNESS_PACKAGE);
+  }
+
+  /**
+   * @param i the index of the thread
+   * @return the thread info of the thread at the given index, or {@code null} if it was not alive
+   *     or is a virtual thread
+   */
+  ThreadInfo info(int i) {
+    return ( infos == null ) ? null : infos[i];
+  }
+
+  /**
+   * @param threadId the id of a thread
+   * @return the index of the thread in this snapshot, or -1 if the thread is not part of it
+   */
+  int indexOf(long threadId) {
+    final int mask = slotIds.length - 1;
+    for ( int slot = hash(threadId) & mask; ; slot = ( slot + 1 ) & mask ) {
+      if ( slotIndexes[slot] < 0 ) {
+        return -1;
+      }
+      if ( slotIds[slot] == threadId ) {
+        return slotIndexes[slot];
+      }
+    }
+  }
+
+  private void index() {
+    Arrays.fill(slotIndexes, -1);
+    final int mask = slotIds.length - 1;
+    for ( int i = 0; i < ids.length; i++ ) {
+      int slot = hash(ids[i]) & mask;
+      while ( slotIndexes[slot] >= 0 ) {
+        slot = ( slot + 1 ) & mask;
+      }
+      slotIds[slot] = ids[i];
+      slotIndexes[slot] = i;
+    }
+  }
+
+  private static int hash(long id) {
+    final long h = id * 0x9E3779B97F4A7C15L;
+    return (int) ( h ^ ( h >>> 32 ) );
+  }
+
+  /**
+   * @return true, iff none of the threads was runnable when the snapshot was taken
+   */
+  boolean noneRunnable() {
+    for ( Thread.State state : states ) {
+      if ( state == Thread.State.RUNNABLE ) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
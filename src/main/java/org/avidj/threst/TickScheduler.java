@@ -0,0 +1,235 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Schedules the ticks of a test run without a shared monitor. A session waiting for a tick
+ * records the tick, pushes itself onto a lock-free stack and parks. The observer is the only
+ * consumer of the stack, it moves the sessions into a min-heap ordered by tick and session. 
+ * Advancing to the next tick pops the sessions waiting for exactly that tick and unparks only 
+ * them, the sessions waiting for later ticks stay parked.
+ *
+ * <p>Every session waits for at most one tick at a time, so the stack and the heap never hold
+ * more entries than there are sessions and are allocated once per test run.
+ */
+class TickScheduler {
+  private static final int EMPTY = -1;
+
+  private final Thread[] workers;
+  private final ObserverService observerService;
+
+  volatile int tick = 0;
+  // the tick each session waits for, written by the session before it is pushed
+  private final int[] waitingTick;
+  // a Treiber stack of sessions that started waiting, linked through next
+  private final AtomicInteger head = new AtomicInteger(EMPTY);
+  private final int[] next;
+  // the number of sessions that registered for a tick and did not resume yet
+  private final AtomicInteger waiting = new AtomicInteger();
+  // the number of times a session resumed from waiting
+  private final AtomicInteger resumes = new AtomicInteger();
+  // the System.nanoTime() at which a session last started waiting
+  private volatile long lastParked;
+  // a min-heap of tick << 32 | session, only accessed by the observer
+  private final long[] heap;
+  private int heapSize = 0;
+
+  TickScheduler(Thread[] workers, ObserverService observerService) {
+    this.workers = workers;
+    this.observerService = observerService;
+    this.waitingTick = new int[workers.length];
+    this.next = new int[workers.length];
+    this.heap = new long[workers.length];
+  }
+
+  /**
+   * Prepares the scheduler for the next run. Only call while no session waits and the observer is
+   * idle.
+   */
+  void reset() {
+    tick = 0;
+    head.set(EMPTY);
+    waiting.set(0);
+    resumes.set(0);
+    heapSize = 0;
+  }
+
+  /**
+   * Parks the calling session until the given tick is reached.
+   *
+   * @param session the index of the calling session
+   * @param tick the tick to wait for
+   * @throws InterruptedException if the session is interrupted while waiting, or if the calling
+   *     thread was abandoned and is no longer the worker of the session
+   * @throws RuntimeException if the tick was passed already
+   */
+  void await(int session, int tick) throws InterruptedException {
+    if ( workers[session] != Thread.currentThread() ) {
+      // an abandoned worker returning late must not register for the ticks of a later run, it
+      // would count as parked in place of its replacement
+      throw new InterruptedException();
+    }
+    final int current = this.tick;
+    if ( current == tick ) {
+      return;
+    }
+    if ( current > tick ) {
+      throw new RuntimeException("Ticks expected out of order. This is a bug in your test.");
+    }
+    waitingTick[session] = tick;
+    waiting.getAndIncrement();
+    push(session);
+    lastParked = System.nanoTime();
+    try {
+      // report that this session parks, the observer may be able to advance the tick right away
+      observerService.signal();
+      // parks rather than waits on a monitor, which would pin the carrier of virtual threads
+      while ( this.tick < tick ) {
+        LockSupport.park(this);
+        if ( Thread.interrupted() ) {
+          throw new InterruptedException();
+        }
+      }
+    } finally {
+      resumes.getAndIncrement();
+      waiting.getAndDecrement();
+    }
+  }
+
+  private void push(int session) {
+    int first;
+    do {
+      first = head.get();
+      next[session] = first;
+    } while ( !head.compareAndSet(first, session) );
+  }
+
+  /**
+   * Advances to the next tick if every session that did not finish yet is parked on a tick.
+   * Only call from the observer.
+   *
+   * @param finished the number of finished sessions
+   * @return true, iff the tick was advanced
+   */
+  boolean advanceIfAllParked(int finished) {
+    final int parked = parked();
+    if ( parked <= 0 || parked + finished < workers.length ) {
+      return false;
+    }
+    advance();
+    return true;
+  }
+
+  /**
+   * @return the {@link System#nanoTime()} at which a session last started waiting
+   */
+  long lastParked() {
+    return lastParked;
+  }
+
+  /**
+   * @return the number of times a session resumed from waiting in the current run
+   */
+  int resumes() {
+    return resumes.get();
+  }
+
+  /**
+   * Advances to the next tick if some session is parked on a tick and no session resumed since
+   * the observer decided that all sessions are blocked or waiting. Only call from the observer.
+   *
+   * @param resumes the number of resumes before the observer took its snapshot
+   * @return true, iff the tick was advanced
+   */
+  boolean advanceIfParked(int resumes) {
+    // a session resuming after the snapshot was taken may be running already
+    if ( parked() <= 0 || this.resumes.get() != resumes ) {
+      return false;
+    }
+    advance();
+    return true;
+  }
+
+  // Returns the number of sessions parked on a tick not reached yet, or -1 if some session 
+  // started waiting or was released but is not accounted for by the heap yet.
+  private int parked() {
+    drain();
+    return ( waiting.get() == heapSize ) ? heapSize : -1;
+  }
+
+  // Moves the sessions that started waiting since the last call from the stack into the heap.
+  private void drain() {
+    for ( int session = head.getAndSet(EMPTY); session != EMPTY; session = next[session] ) {
+      offer(( (long) waitingTick[session] << 32 ) | session);
+    }
+  }
+
+  // Pops the sessions waiting for the smallest tick, then wakes up exactly these sessions.
+  private void advance() {
+    final int nextTick = (int) ( heap[0] >>> 32 );
+    final int first = heapSize;
+    while ( heapSize > 0 && (int) ( heap[0] >>> 32 ) == nextTick ) {
+      // the popped entries are kept behind the end of the heap
+      final long entry = poll();
+      heap[heapSize] = entry;
+    }
+    tick = nextTick;
+    for ( int i = heapSize; i < first; i++ ) {
+      LockSupport.unpark(workers[(int) heap[i]]);
+    }
+  }
+
+  private void offer(long entry) {
+    int i = heapSize++;
+    while ( i > 0 ) {
+      final int parent = ( i - 1 ) >>> 1;
+      if ( heap[parent] <= entry ) {
+        break;
+      }
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = entry;
+  }
+
+  private long poll() {
+    final long min = heap[0];
+    final long last = heap[--heapSize];
+    int i = 0;
+    final int half = heapSize >>> 1;
+    while ( i < half ) {
+      int child = 2 * i + 1;
+      if ( child + 1 < heapSize && heap[child + 1] < heap[child] ) {
+        child++;
+      }
+      if ( last <= heap[child] ) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = last;
+    return min;
+  }
+}
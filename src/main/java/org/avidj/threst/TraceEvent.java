@@ -0,0 +1,53 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The kinds of events in the trace of a run, see {@link TraceRecorder}. The ordinals are part of
+ * the binary trace format, new kinds must be appended.
+ */
+enum TraceEvent {
+  BLOCK_STARTED("block %d started"),
+  BLOCK_ENDED("block %d ended"),
+  SESSION_FAILED("failed in block %d"),
+  TICK_AWAITED("waits for tick %d"),
+  TICK_RESUMED("resumed at tick %d"),
+  TICK_ADVANCED("advanced to tick %d"),
+  DEADLOCK_DETECTED("detected a deadlock"),
+  STARVATION_DETECTED("detected starvation of session %d"),
+  TIMED_OUT("timed out");
+
+  private static final TraceEvent[] VALUES = values();
+
+  private final String format;
+
+  TraceEvent(String format) {
+    this.format = format;
+  }
+
+  static TraceEvent of(int ordinal) {
+    return ( ordinal >= 0 && ordinal < VALUES.length ) ? VALUES[ordinal] : null;
+  }
+
+  String describe(int argument) {
+    return String.format(format, argument);
+  }
+}
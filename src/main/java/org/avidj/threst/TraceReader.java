@@ -0,0 +1,95 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Renders the trace of a failed run as a timeline per session and one for the observer. The 
+ * trace file starts with a header of the magic number, the format version, the number of 
+ * threads and the {@link System#nanoTime()} at the start of the run. For every thread follow 
+ * its session index, -1 for the observer, the number of its events, and the events, oldest 
+ * first, each as the time and a long with the kind of event in the upper and its argument in 
+ * the lower half. All values are big-endian.
+ *
+ * <p>Run as {@code java org.avidj.threst.TraceReader file...} to print the timelines of files.
+ */
+public final class TraceReader {
+
+  private TraceReader() {
+  }
+
+  /**
+   * @param file a trace written after a failed run
+   * @return the timelines of the threads, times in microseconds since the start of the run
+   * @throws IOException if the file cannot be read or is not a trace
+   */
+  public static String render(Path file) throws IOException {
+    final ByteBuffer in;
+    try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ) {
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if ( in.remaining() < 20 || in.getInt() != TraceRecorder.MAGIC ) {
+      throw new IOException("not a trace: " + file);
+    }
+    final int version = in.getInt();
+    if ( version != TraceRecorder.VERSION ) {
+      throw new IOException("unsupported trace version " + version + ": " + file);
+    }
+    final int threads = in.getInt();
+    final long startNanos = in.getLong();
+    final StringBuilder timeline = new StringBuilder(String.format(
+        "Trace of %d threads, times in microseconds since the start of the run", threads));
+    for ( int t = 0; t < threads; t++ ) {
+      final int session = in.getInt();
+      final int count = in.getInt();
+      timeline.append('\n').append(( session < 0 ) ? "observer" : "session " + session)
+          .append(':');
+      for ( int e = 0; e < count; e++ ) {
+        final long time = in.getLong();
+        final long event = in.getLong();
+        final TraceEvent kind = TraceEvent.of((int) ( event >>> 32 ));
+        timeline.append(String.format(Locale.ROOT, "\n  %12.1f  ", ( time - startNanos ) / 1e3))
+            .append(( kind == null ) ? "unknown event " + ( event >>> 32 ) 
+                : kind.describe((int) event));
+      }
+    }
+    return timeline.toString();
+  }
+
+  /**
+   * Prints the timelines of the given trace files.
+   *
+   * @param args the trace files
+   * @throws IOException if a file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    for ( String file : args ) {
+      System.out.println(render(Paths.get(file)));
+    }
+  }
+}
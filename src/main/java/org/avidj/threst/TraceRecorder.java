@@ -0,0 +1,165 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the events of a run into a ring buffer per session and one for the observer, so that 
+ * a failing run can be examined after the fact. The buffers are preallocated arrays of 
+ * primitives and every buffer has a single writer, so recording an event takes a clock read and
+ * two array stores and never allocates. Only the latest events of every buffer are kept.
+ *
+ * <p>A failing run is dumped into a memory-mapped binary file, see {@link TraceReader} for the
+ * format and rendering. A worker abandoned by the recovery of a failed run may still write into 
+ * the buffer of its session while the next run records, which can garble a few events.
+ */
+class TraceRecorder {
+  static final int MAGIC = 0x54485254;
+  static final int VERSION = 1;
+  // the number of traces kept in a directory, the oldest ones are deleted
+  static final int MAX_DUMPS = 20;
+  private static final String PREFIX = "threst-";
+  private static final String SUFFIX = ".trace";
+  private static final AtomicInteger DUMPS = new AtomicInteger();
+
+  private final int capacity;
+  private final int mask;
+  // the events of every buffer, the time and the kind and argument of each
+  private final long[][] times;
+  private final long[][] events;
+  private final long[] heads;
+  private long startNanos;
+
+  /**
+   * @param sessions the number of sessions, the observer records into an additional buffer
+   * @param capacity the number of events kept per buffer, rounded up to a power of two
+   */
+  TraceRecorder(int sessions, int capacity) {
+    this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.mask = this.capacity - 1;
+    this.times = new long[sessions + 1][this.capacity];
+    this.events = new long[sessions + 1][this.capacity];
+    this.heads = new long[sessions + 1];
+  }
+
+  /**
+   * @return the index of the buffer of the observer
+   */
+  int observer() {
+    return heads.length - 1;
+  }
+
+  /**
+   * Clears the buffers at the start of a run.
+   */
+  void reset() {
+    for ( int i = 0; i < heads.length; i++ ) {
+      heads[i] = 0;
+    }
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * @param buffer the index of the session, or {@link #observer()}
+   * @param event the kind of event
+   * @param argument the argument of the event, e.g. the index of a block
+   */
+  void record(int buffer, TraceEvent event, int argument) {
+    final long head = heads[buffer];
+    final int slot = (int) head & mask;
+    times[buffer][slot] = System.nanoTime();
+    events[buffer][slot] = ( (long) event.ordinal() << 32 ) | ( argument & 0xFFFFFFFFL );
+    heads[buffer] = head + 1;
+  }
+
+  /**
+   * Writes the buffers into a new file in the given directory. Deletes the oldest traces in the
+   * directory beyond the latest {@link #MAX_DUMPS}.
+   *
+   * @param directory the directory to create the file in, created if missing
+   * @return the file written
+   * @throws IOException if the file cannot be written
+   */
+  Path dump(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    final Path file = directory.resolve(String.format("%s%d-%d%s", PREFIX,
+        ManagementFactory.getRuntimeMXBean().getPid(), DUMPS.incrementAndGet(), SUFFIX));
+    final int[] counts = new int[heads.length];
+    long size = 4 + 4 + 4 + 8;
+    for ( int i = 0; i < heads.length; i++ ) {
+      counts[i] = (int) Math.min(heads[i], capacity);
+      size += 4 + 4 + 16L * counts[i];
+    }
+    try ( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, 
+        StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+      final MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      out.putInt(MAGIC).putInt(VERSION).putInt(heads.length).putLong(startNanos);
+      for ( int i = 0; i < heads.length; i++ ) {
+        out.putInt(( i == observer() ) ? -1 : i).putInt(counts[i]);
+        // the oldest event kept first
+        for ( long e = heads[i] - counts[i]; e < heads[i]; e++ ) {
+          final int slot = (int) e & mask;
+          out.putLong(times[i][slot]).putLong(events[i][slot]);
+        }
+      }
+      out.force();
+    }
+    prune(directory);
+    return file;
+  }
+
+  private static void prune(Path directory) throws IOException {
+    final List<Path> traces = new ArrayList<>();
+    try ( DirectoryStream<Path> files = Files.newDirectoryStream(directory, 
+        PREFIX + "*" + SUFFIX) ) {
+      for ( Path trace : files ) {
+        traces.add(trace);
+      }
+    }
+    if ( traces.size() <= MAX_DUMPS ) {
+      return;
+    }
+    final Map<Path, FileTime> modified = new HashMap<>();
+    for ( Path trace : traces ) {
+      modified.put(trace, Files.getLastModifiedTime(trace));
+    }
+    traces.sort(Comparator.comparing(modified::get));
+    for ( Path trace : traces.subList(0, traces.size() - MAX_DUMPS) ) {
+      // may have been deleted concurrently by another test
+      Files.deleteIfExists(trace);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.opentest4j.AssertionFailedError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the outcome of the runs of all instances of a concurrent test into a single verdict.
+ * The first failing run determines the error thrown, errors of runs failing concurrently in other
+ * instances are attached as suppressed exceptions.
+ */
+class Verdict {
+  private static final Logger LOG = LoggerFactory.getLogger(Verdict.class);
+
+  private final int expectedSuccessCount;
+  private final List<AssertionError> errors = new ArrayList<>();
+  private volatile boolean failed;
+  private volatile TestRun lastRun;
+  private TestRun failedRun;
+
+  Verdict(int expectedSuccessCount) {
+    this.expectedSuccessCount = expectedSuccessCount;
+  }
+
+  boolean failed() {
+    return failed;
+  }
+
+  /**
+   * Checks the outcome of a finished run.
+   *
+   * @param run the run to check
+   * @return true, iff the run succeeded as expected
+   */
+  boolean check(TestRun run) {
+    lastRun = run;
+    if ( run.hasAssertionError() ) {
+      final AssertionError error = run.getAssertionError();
+      final String context = context(run);
+      fail(run, context.isEmpty() ? error 
+          : new AssertionError(error.getMessage() + context, error));
+      return false;
+    } else if ( run.successCount() != expectedSuccessCount ) {
+      List<Throwable> throwables = run.getThrowables();
+      for ( int i = 0, n = throwables.size(); i < n; i++ ) {
+        LOG.error("Error occurred in thread " + i + ": ", throwables.get(i));
+      }
+      String message = String.format("success count deviates, expected %d but got %d",
+          expectedSuccessCount, run.successCount());
+      fail(run, new AssertionFailedError(message + context(run)));
+      return false;
+    } else if ( run.history != null ) {
+      final String violation = LinearizabilityChecker.check(
+          run.concurrentTest.sequentialSpec(), run.history.operations());
+      if ( violation != null ) {
+        fail(run, new AssertionFailedError(violation + context(run)));
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // what it takes to reproduce and examine the run, appended to failure messages
+  private String context(TestRun run) {
+    String context = "";
+    if ( run.scheduler != null ) {
+      context += "\n" + run.scheduler.describe();
+    }
+    if ( run.noise != null ) {
+      context += "\n" + run.noise.describe();
+    }
+    // only the first failing run is dumped, instances failing concurrently may dump theirs, too
+    if ( run.trace != null && !failed ) {
+      try {
+        context += "\nTrace of the failing run: " 
+            + run.trace.dump(run.concurrentTest.traceDirectory());
+      } catch ( IOException e ) {
+        LOG.warn("cannot dump the trace of the failed run", e);
+      }
+    }
+    return context;
+  }
+
+  private synchronized void fail(TestRun run, AssertionError error) {
+    if ( failedRun == null ) {
+      failedRun = run;
+    }
+    errors.add(error);
+    failed = true;
+  }
+
+  /**
+   * @return the failed run if any run failed, otherwise the last run checked
+   */
+  synchronized TestRun lastRun() {
+    return ( failedRun != null ) ? failedRun : lastRun;
+  }
+
+  /**
+   * Throws the error of the first failing run, if any.
+   *
+   * @throws AssertionError if any run failed
+   */
+  synchronized void assertSuccess() {
+    if ( errors.isEmpty() ) {
+      return;
+    }
+    AssertionError first = errors.get(0);
+    for ( int i = 1, n = errors.size(); i < n; i++ ) {
+      first.addSuppressed(errors.get(i));
+    }
+    throw first;
+  }
+}
@@ -0,0 +1,102 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The wait-for graph of the worker threads of a test run. A thread that is blocked on a monitor,
+ * or waiting on a monitor or an ownable synchronizer such as a {@code ReentrantLock} or the write
+ * lock of a {@code ReentrantReadWriteLock}, has an edge to the thread owning it. Timed waits are
+ * ignored as they resolve by themselves, as are synchronizers without an exclusive owner like
+ * read locks and semaphores.
+ *
+ * <p>Every thread waits for at most one lock, so every thread has at most one successor. All
+ * cycles are found in a single pass over the threads, visiting every thread at most once.
+ */
+class WaitForGraph {
+  private static final int NONE = -1;
+
+  private final int[] successor;
+  // the number of the walk that first visited a thread, 0 if not visited yet
+  private final int[] visitedBy;
+
+  WaitForGraph(int size) {
+    successor = new int[size];
+    visitedBy = new int[size];
+  }
+
+  /**
+   * Finds all deadlocks among the threads in the given snapshot.
+   *
+   * @param snapshot a snapshot of the worker threads of a test run
+   * @return the cycles of the wait-for graph, each given by the infos of the threads in it, in
+   *     the order of the wait-for relation; an empty list if there is no deadlock
+   */
+  List<List<ThreadInfo>> findCycles(ThreadSnapshot snapshot) {
+    final int n = snapshot.size();
+    for ( int i = 0; i < n; i++ ) {
+      successor[i] = waitsFor(snapshot, i);
+      visitedBy[i] = 0;
+    }
+    List<List<ThreadInfo>> cycles = Collections.emptyList();
+    for ( int start = 0; start < n; start++ ) {
+      final int walk = start + 1;
+      int current = start;
+      while ( current != NONE && visitedBy[current] == 0 ) {
+        visitedBy[current] = walk;
+        current = successor[current];
+      }
+      if ( current != NONE && visitedBy[current] == walk ) {
+        // this walk ran into itself, current is on a cycle not reported by an earlier walk
+        if ( cycles.isEmpty() ) {
+          cycles = new ArrayList<>();
+        }
+        cycles.add(cycle(snapshot, current));
+      }
+    }
+    return cycles;
+  }
+
+  private static int waitsFor(ThreadSnapshot snapshot, int i) {
+    switch ( snapshot.states[i] ) {
+      case BLOCKED:
+      case WAITING:
+        final long owner = snapshot.lockOwnerIds[i];
+        return ( owner == ThreadSnapshot.NO_OWNER ) ? NONE : snapshot.indexOf(owner);
+      default:
+        return NONE;
+    }
+  }
+
+  private List<ThreadInfo> cycle(ThreadSnapshot snapshot, int first) {
+    List<ThreadInfo> cycle = new ArrayList<>();
+    int current = first;
+    do {
+      cycle.add(snapshot.info(current));
+      current = successor[current];
+    } while ( current != first );
+    return Collections.unmodifiableList(cycle);
+  }
+}
@@ -0,0 +1,64 @@
+package org.avidj.threst.agent;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * A Java agent inserting scheduling points into the classes under test, so that tests running
+ * under a controlled schedule can switch sessions inside the code under test rather than only 
+ * between blocks. Add it to the JVM running the tests, optionally restricted to the packages 
+ * under test:
+ *
+ * <pre>
+ * -javaagent:threst.jar=com.acme.,org.example.queue.
+ * </pre>
+ */
+public final class Agent {
+
+  private Agent() { /* hidden utility class constructor */ }
+
+  /**
+   * Installs the transformer before the main method runs.
+   *
+   * @param arguments comma-separated prefixes of the names of the classes to instrument, all
+   *     classes that are not excluded if empty
+   * @param instrumentation the instrumentation of the JVM
+   */
+  public static void premain(String arguments, Instrumentation instrumentation) {
+    instrumentation.addTransformer(new SchedulingPointTransformer(prefixes(arguments)));
+  }
+
+  /**
+   * Installs the transformer into a running JVM. Classes loaded before are not instrumented.
+   *
+   * @param arguments comma-separated prefixes of the names of the classes to instrument
+   * @param instrumentation the instrumentation of the JVM
+   */
+  public static void agentmain(String arguments, Instrumentation instrumentation) {
+    premain(arguments, instrumentation);
+  }
+
+  private static String[] prefixes(String arguments) {
+    return ( arguments == null || arguments.trim().isEmpty() ) 
+        ? new String[0] : arguments.trim().split("\\s*,\\s*");
+  }
+}
@@ -0,0 +1,109 @@
+package org.avidj.threst.agent;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the classes under test with scheduling points inserted, for tests that do not run with
+ * the {@link Agent}. Classes with one of the given prefixes are defined by this loader from the
+ * class files of the parent, all other classes are loaded by the parent. Test code therefore
+ * accesses the instrumented classes through types loaded by the parent, e.g. interfaces.
+ */
+public class InstrumentingClassLoader extends ClassLoader {
+  static {
+    registerAsParallelCapable();
+  }
+
+  private final SchedulingPointTransformer transformer;
+
+  /**
+   * @param parent the loader of the class files and all classes not instrumented
+   * @param prefixes the prefixes of the names of the classes to instrument, e.g. {@code com.acme.}
+   * @throws IllegalArgumentException if no prefix is given
+   */
+  public InstrumentingClassLoader(ClassLoader parent, String... prefixes) {
+    super(parent);
+    if ( prefixes.length == 0 ) {
+      throw new IllegalArgumentException("no classes to instrument");
+    }
+    this.transformer = new SchedulingPointTransformer(prefixes);
+  }
+
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    if ( !transformer.instruments(name.replace('.', '/')) ) {
+      return super.loadClass(name, resolve);
+    }
+    synchronized ( getClassLoadingLock(name) ) {
+      Class<?> loaded = findLoadedClass(name);
+      if ( loaded == null ) {
+        loaded = findClass(name);
+      }
+      if ( resolve ) {
+        resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+
+  @Override
+  protected Class<?> findClass(String name) throws ClassNotFoundException {
+    final byte[] classfile = read(name);
+    final byte[] instrumented = transformer.instrument(getParent(), classfile);
+    return defineClass(name, instrumented, 0, instrumented.length);
+  }
+
+  private byte[] read(String name) throws ClassNotFoundException {
+    try ( InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class") ) {
+      if ( in == null ) {
+        throw new ClassNotFoundException(name);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for ( int read; ( read = in.read(buffer) ) >= 0; ) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } catch ( IOException e ) {
+      throw new ClassNotFoundException(name, e);
+    }
+  }
+
+  /**
+   * Creates an instance of an instrumented class using its no-argument constructor.
+   *
+   * @param <T> the type the instance is accessed through, loaded by the parent
+   * @param type the type the instance is accessed through
+   * @param className the name of the instrumented class
+   * @return a new instance of the instrumented class
+   * @throws IllegalArgumentException if the class cannot be instantiated
+   */
+  public <T> T newInstance(Class<T> type, String className) {
+    try {
+      return type.cast(loadClass(className).getDeclaredConstructor().newInstance());
+    } catch ( ReflectiveOperationException e ) {
+      throw new IllegalArgumentException("cannot instantiate " + className, e);
+    }
+  }
+}
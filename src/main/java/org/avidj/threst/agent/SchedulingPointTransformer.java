@@ -0,0 +1,207 @@
+package org.avidj.threst.agent;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inserts scheduling points into the classes under test: before monitor enters, after monitor 
+ * exits, before accesses of volatile fields, before acquiring a {@code java.util.concurrent} lock
+ * or parking, and after releasing a lock. Each scheduling point is a call of
+ * {@code SchedulingPoints.point(Object)} with the object accessed: the monitor, the lock, or an 
+ * interned string naming the volatile field. Volatile fields are told apart by name only, so
+ * accesses of the same field of different objects are considered to access the same object.
+ *
+ * <p>The monitors of {@code synchronized} methods are entered and exited implicitly, so they are
+ * not scheduling points. Classes of the JDK, of the harness, and of its dependencies are never
+ * instrumented, as the hooks use them themselves.
+ */
+public class SchedulingPointTransformer implements ClassFileTransformer {
+  private static final String HOOKS = "org/avidj/threst/SchedulingPoints";
+  private static final List<String> EXCLUDED = Arrays.asList(
+      "java/", "javax/", "jdk/", "sun/", "com/sun/", "org/avidj/util/", "org/objectweb/asm/",
+      "org/slf4j/", "org/apache/logging/", "org/apache/maven/", "com/google/common/", 
+      "org/junit/", "org/opentest4j/", "org/hamcrest/");
+  private static final List<String> LOCKS = Arrays.asList(
+      "java/util/concurrent/locks/Lock",
+      "java/util/concurrent/locks/ReentrantLock",
+      "java/util/concurrent/locks/ReentrantReadWriteLock$ReadLock",
+      "java/util/concurrent/locks/ReentrantReadWriteLock$WriteLock",
+      "java/util/concurrent/locks/StampedLock");
+
+  private final List<String> included;
+  private final VolatileFields volatileFields = new VolatileFields();
+
+  /**
+   * @param included the prefixes of the names of the classes to instrument, e.g. 
+   *     {@code com.acme.}; all classes that are not excluded if empty
+   */
+  public SchedulingPointTransformer(String... included) {
+    String[] internal = new String[included.length];
+    for ( int i = 0; i < included.length; i++ ) {
+      internal[i] = included[i].replace('.', '/');
+    }
+    this.included = Arrays.asList(internal);
+  }
+
+  /**
+   * @param className the internal name of a class
+   * @return true, iff the class is instrumented
+   */
+  public boolean instruments(String className) {
+    if ( className == null || isHarness(className) ) {
+      return false;
+    }
+    for ( String prefix : EXCLUDED ) {
+      if ( className.startsWith(prefix) ) {
+        return false;
+      }
+    }
+    if ( included.isEmpty() ) {
+      return true;
+    }
+    for ( String prefix : included ) {
+      if ( className.startsWith(prefix) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // the classes of the harness itself, but not classes in sub-packages like test fixtures
+  private static boolean isHarness(String className) {
+    return ( className.startsWith("org/avidj/threst/") 
+        && className.indexOf('/', "org/avidj/threst/".length()) < 0 )
+        || className.startsWith("org/avidj/threst/agent/");
+  }
+
+  @Override
+  public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+      ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+    if ( !instruments(className) ) {
+      return null;
+    }
+    return instrument(loader, classfileBuffer);
+  }
+
+  /**
+   * Inserts scheduling points into the given class.
+   *
+   * @param loader the loader defining the class, used to look up volatile fields
+   * @param classfile the class file of the class
+   * @return the instrumented class file
+   */
+  public byte[] instrument(ClassLoader loader, byte[] classfile) {
+    ClassReader reader = new ClassReader(classfile);
+    // the hooks leave nothing on the stack, so the frames do not change, but max stack may
+    ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String descriptor, 
+          String signature, String[] exceptions) {
+        MethodVisitor visitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+        return ( visitor == null ) ? null : new SchedulingPointInjector(visitor, loader);
+      }
+    }, 0);
+    return writer.toByteArray();
+  }
+
+  private class SchedulingPointInjector extends MethodVisitor {
+    private final ClassLoader loader;
+
+    SchedulingPointInjector(MethodVisitor visitor, ClassLoader loader) {
+      super(Opcodes.ASM9, visitor);
+      this.loader = loader;
+    }
+
+    private void point() {
+      super.visitMethodInsn(Opcodes.INVOKESTATIC, HOOKS, "point", "()V", false);
+    }
+
+    // a scheduling point for the object on top of the stack, which is consumed
+    private void pointOnTarget() {
+      super.visitMethodInsn(Opcodes.INVOKESTATIC, HOOKS, "point", "(Ljava/lang/Object;)V", false);
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      if ( opcode == Opcodes.MONITORENTER ) {
+        super.visitInsn(Opcodes.DUP);
+        pointOnTarget();
+        super.visitInsn(opcode);
+      } else if ( opcode == Opcodes.MONITOREXIT ) {
+        super.visitInsn(Opcodes.DUP);
+        super.visitInsn(opcode);
+        pointOnTarget();
+      } else {
+        super.visitInsn(opcode);
+      }
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+      if ( volatileFields.isVolatile(loader, owner, name) ) {
+        // string constants are interned, so all accesses of the field name the same object
+        super.visitLdcInsn(owner + '.' + name);
+        pointOnTarget();
+      }
+      super.visitFieldInsn(opcode, owner, name, descriptor);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, 
+        boolean isInterface) {
+      final boolean lock = LOCKS.contains(owner);
+      // lock(), tryLock(), and readLock() and writeLock() of a StampedLock
+      final boolean acquires = lock && ( name.startsWith("lock") || name.startsWith("tryLock")
+          || name.startsWith("readLock") || name.startsWith("writeLock") );
+      final boolean parks = owner.equals("java/util/concurrent/locks/LockSupport") 
+          && name.startsWith("park");
+      // without arguments the lock is on top of the stack
+      final boolean onLock = lock && descriptor.startsWith("()");
+      if ( acquires && onLock ) {
+        super.visitInsn(Opcodes.DUP);
+        pointOnTarget();
+      } else if ( acquires || parks ) {
+        point();
+      }
+      final boolean releases = lock && name.startsWith("unlock");
+      if ( releases && onLock ) {
+        super.visitInsn(Opcodes.DUP);
+      }
+      super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+      if ( releases && onLock ) {
+        pointOnTarget();
+      } else if ( releases ) {
+        point();
+      }
+    }
+  }
+}
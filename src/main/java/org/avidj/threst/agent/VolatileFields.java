@@ -0,0 +1,100 @@
+package org.avidj.threst.agent;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Finds out whether a field accessed by an instruction is volatile. Field instructions only name
+ * the field, so the class declaring it is read from the class path of the loader. The volatile 
+ * fields of a class, including the inherited ones, are read once and cached.
+ */
+class VolatileFields {
+  private final ConcurrentMap<String, Set<String>> fields = new ConcurrentHashMap<>();
+
+  /**
+   * @param loader the loader to read the class from, the system loader if {@code null}
+   * @param owner the internal name of the class referenced by the field instruction
+   * @param name the name of the field
+   * @return true, iff the field is volatile
+   */
+  boolean isVolatile(ClassLoader loader, String owner, String name) {
+    if ( owner.startsWith("java/") ) {
+      // fields of the JDK are hardly ever accessed directly by code under test
+      return false;
+    }
+    return volatileFields(loader, owner).contains(name);
+  }
+
+  private Set<String> volatileFields(ClassLoader loader, String owner) {
+    Set<String> cached = fields.get(owner);
+    if ( cached != null ) {
+      return cached;
+    }
+    Set<String> found = read(loader, owner);
+    Set<String> previous = fields.putIfAbsent(owner, found);
+    return ( previous == null ) ? found : previous;
+  }
+
+  private Set<String> read(ClassLoader loader, String owner) {
+    final ClassLoader source = ( loader == null ) ? ClassLoader.getSystemClassLoader() : loader;
+    try ( InputStream in = source.getResourceAsStream(owner + ".class") ) {
+      if ( in == null ) {
+        return Collections.emptySet();
+      }
+      final Set<String> found = new HashSet<>();
+      final String[] superName = new String[1];
+      new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM9) {
+        @Override
+        public void visit(int version, int access, String name, String signature, 
+            String superclass, String[] interfaces) {
+          superName[0] = superclass;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, 
+            String signature, Object value) {
+          if ( ( access & Opcodes.ACC_VOLATILE ) != 0 ) {
+            found.add(name);
+          }
+          return null;
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      if ( superName[0] != null && !superName[0].startsWith("java/") ) {
+        found.addAll(volatileFields(loader, superName[0]));
+      }
+      return found;
+    } catch ( IOException e ) {
+      return Collections.emptySet();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package org.avidj.util;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with a fixed memory footprint. Values are counted in
+ * logarithmic buckets, every power of two is split into 8 linear sub-buckets, so percentiles are
+ * accurate to within 12.5% over the full range of long. Recording is lock-free and does not
+ * allocate, so that it can be done from any thread while the histogram is being read.
+ */
+public final class Histogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = ( 64 - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value, negative values are recorded as 0.
+   *
+   * @param value the value to record
+   */
+  public void record(long value) {
+    final long v = Math.max(0, value);
+    counts.incrementAndGet(bucket(v));
+    count.incrementAndGet();
+    sum.addAndGet(v);
+    long current;
+    while ( ( current = max.get() ) < v && !max.compareAndSet(current, v) ) {
+      // retry
+    }
+  }
+
+  /**
+   * Adds all values recorded by another histogram to this one. Values recorded concurrently may or
+   * may not be added.
+   *
+   * @param other the histogram to add
+   */
+  public void add(Histogram other) {
+    for ( int i = 0; i < BUCKETS; i++ ) {
+      final long n = other.counts.get(i);
+      if ( n != 0 ) {
+        counts.addAndGet(i, n);
+      }
+    }
+    count.addAndGet(other.count.get());
+    sum.addAndGet(other.sum.get());
+    final long v = other.max.get();
+    long current;
+    while ( ( current = max.get() ) < v && !max.compareAndSet(current, v) ) {
+      // retry
+    }
+  }
+
+  /**
+   * Clears all recorded values. Values recorded concurrently may or may not be cleared.
+   */
+  public void reset() {
+    for ( int i = 0; i < BUCKETS; i++ ) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  /**
+   * @return the number of values recorded
+   */
+  public long count() {
+    return count.get();
+  }
+
+  /**
+   * @return the largest value recorded, 0 if none was recorded
+   */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * @return the mean of the values recorded, 0 if none was recorded
+   */
+  public double mean() {
+    final long n = count.get();
+    return ( n == 0 ) ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns an upper bound of the value below which the given fraction of the recorded values
+   * falls. The bound exceeds the exact percentile by at most 12.5% and never exceeds the largest
+   * value recorded.
+   *
+   * @param fraction the fraction of values, between 0 and 1, e.g. 0.99 for the 99th percentile
+   * @return the percentile, 0 if no value was recorded
+   * @throws IllegalArgumentException if the fraction is not between 0 and 1
+   */
+  public long percentile(double fraction) {
+    if ( fraction < 0 || fraction > 1 ) {
+      throw new IllegalArgumentException("fraction must be in [0, 1]: " + fraction);
+    }
+    long total = 0;
+    for ( int i = 0; i < BUCKETS; i++ ) {
+      total += counts.get(i);
+    }
+    final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for ( int i = 0; i < BUCKETS; i++ ) {
+      seen += counts.get(i);
+      if ( seen >= rank ) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return 0;
+  }
+
+  static int bucket(long value) {
+    if ( value < SUB_BUCKETS ) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+    return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+  }
+
+  // the largest value counted in the given bucket
+  static long upperBound(int bucket) {
+    if ( bucket < SUB_BUCKETS ) {
+      return bucket;
+    }
+    final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    if ( exponent == 63 ) {
+      // the bounds of the last power of two do not fit into a long
+      return Long.MAX_VALUE;
+    }
+    final long subBucket = bucket % SUB_BUCKETS;
+    final long width = 1L << ( exponent - SUB_BUCKET_BITS );
+    final long lowerBound = ( 1L << exponent ) + subBucket * width;
+    return lowerBound + ( width - 1 );
+  }
+}
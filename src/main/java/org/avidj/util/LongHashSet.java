@@ -0,0 +1,132 @@
+package org.avidj.util;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A set of long values with open addressing and linear probing. Values are stored in a single
+ * primitive array without boxing, the set only allocates when it grows. It is not thread-safe.
+ */
+public final class LongHashSet {
+  private static final long EMPTY = 0;
+
+  private long[] slots;
+  private int size = 0;
+  // EMPTY marks free slots, so it is kept apart
+  private boolean containsEmpty = false;
+
+  public LongHashSet() {
+    this(16);
+  }
+
+  /**
+   * @param capacity the number of values the set holds without growing
+   */
+  public LongHashSet(int capacity) {
+    slots = new long[Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1];
+  }
+
+  /**
+   * Adds a value to the set.
+   *
+   * @param value the value to add
+   * @return true, iff the value was not in the set before
+   */
+  public boolean add(long value) {
+    if ( value == EMPTY ) {
+      if ( containsEmpty ) {
+        return false;
+      }
+      containsEmpty = true;
+      size++;
+      return true;
+    }
+    final int mask = slots.length - 1;
+    int slot = hash(value) & mask;
+    while ( slots[slot] != EMPTY ) {
+      if ( slots[slot] == value ) {
+        return false;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    slots[slot] = value;
+    size++;
+    // keep the load factor at most 1/2
+    if ( size * 2 > slots.length ) {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * @param value a value
+   * @return true, iff the value is in the set
+   */
+  public boolean contains(long value) {
+    if ( value == EMPTY ) {
+      return containsEmpty;
+    }
+    final int mask = slots.length - 1;
+    for ( int slot = hash(value) & mask; slots[slot] != EMPTY; slot = ( slot + 1 ) & mask ) {
+      if ( slots[slot] == value ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of values in the set
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes all values, keeping the capacity of the set.
+   */
+  public void clear() {
+    Arrays.fill(slots, EMPTY);
+    size = 0;
+    containsEmpty = false;
+  }
+
+  private void grow() {
+    final long[] old = slots;
+    slots = new long[old.length * 2];
+    final int mask = slots.length - 1;
+    for ( long value : old ) {
+      if ( value != EMPTY ) {
+        int slot = hash(value) & mask;
+        while ( slots[slot] != EMPTY ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        slots[slot] = value;
+      }
+    }
+  }
+
+  private static int hash(long value) {
+    final long h = value * 0x9E3779B97F4A7C15L;
+    return (int) ( h ^ ( h >>> 32 ) );
+  }
+}
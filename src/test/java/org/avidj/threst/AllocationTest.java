@@ -0,0 +1,96 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+public class AllocationTest {
+  private static final Logger LOG = LoggerFactory.getLogger(AllocationTest.class);
+  private static final int WARMUP = 20000;
+  private static final int REPETITIONS = 20000;
+  // tolerates the occasional fallback poll of the observer, a single object per run exceeds it
+  private static final long MAX_BYTES_PER_RUN = 16;
+
+  @Test
+  public void testSteadyStateRunsDoNotAllocate() throws InterruptedException {
+    final com.sun.management.ThreadMXBean threadMxBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMxBean.isThreadAllocatedMemorySupported());
+    threadMxBean.setThreadAllocatedMemoryEnabled(true);
+
+    ConcurrentTest test = threads(
+        thread().exec(() -> { }),
+        thread().exec(() -> { }),
+        thread().exec(() -> { }));
+    Verdict verdict = new Verdict(3);
+    ObserverService observerService = new ObserverService(1);
+    TestInstance instance = new TestInstance(test, new Budget(1, 0), verdict, observerService);
+    observerService.start();
+    try {
+      final long[] ids = threadIds(instance.run, observerService);
+      for ( int i = 0; i < WARMUP; i++ ) {
+        instance.run.runOnce();
+        verdict.check(instance.run);
+      }
+      final long before = sum(threadMxBean.getThreadAllocatedBytes(ids));
+      for ( int i = 0; i < REPETITIONS; i++ ) {
+        instance.run.runOnce();
+        verdict.check(instance.run);
+      }
+      final long allocated = sum(threadMxBean.getThreadAllocatedBytes(ids)) - before;
+      verdict.assertSuccess();
+      LOG.info("allocated {} bytes in {} runs", allocated, REPETITIONS);
+      assertThat(allocated / REPETITIONS, lessThan(MAX_BYTES_PER_RUN));
+    } finally {
+      instance.shutdown();
+      observerService.close();
+    }
+  }
+
+  // the driving thread, all workers, and the observer
+  private static long[] threadIds(TestRun run, ObserverService observerService) {
+    long[] ids = new long[run.workers.length + 2];
+    ids[0] = Thread.currentThread().threadId();
+    for ( int i = 0; i < run.workers.length; i++ ) {
+      ids[i + 1] = run.workers[i].threadId();
+    }
+    ids[ids.length - 1] = observerService.thread().threadId();
+    return ids;
+  }
+
+  private static long sum(long[] values) {
+    long sum = 0;
+    for ( long value : values ) {
+      sum += value;
+    }
+    return sum;
+  }
+}
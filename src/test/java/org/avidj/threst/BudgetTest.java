@@ -0,0 +1,89 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BudgetTest {
+
+  @Test
+  public void testDurationBoundsRepetitions() {
+    final AtomicLong runs = new AtomicLong();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> {
+          runs.incrementAndGet();
+          t.waitFor(1);
+        }),
+        thread().exec((t) -> { }))
+        .duration(Duration.ofMillis(300))
+        .parallelism(2)
+        .assertSuccess();
+    RunStatistics statistics = test.statistics();
+    assertThat(statistics.repetitions(), is(runs.get()));
+    assertThat(statistics.repetitions(), greaterThan(1L));
+    assertThat(statistics.elapsed(), greaterThanOrEqualTo(Duration.ofMillis(300)));
+    assertThat(statistics.elapsed(), lessThan(Duration.ofSeconds(5)));
+    assertThat(statistics.repetitionsPerSecond(), greaterThan(0.0));
+  }
+
+  @Test
+  public void testRepeatLimitsDuration() {
+    ConcurrentTest test = threads(thread().exec(() -> { }))
+        .duration(Duration.ofMinutes(1))
+        .repeat(10)
+        .assertSuccess();
+    assertThat(test.statistics().repetitions(), is(10L));
+  }
+
+  @Test
+  public void testUntilConfidence() {
+    ConcurrentTest test = threads(thread().exec(() -> { }))
+        .until(0.99, 0.001);
+    assertThat(test.repetitions(), is(4603));
+    test.assertSuccess();
+    assertThat(test.statistics().repetitions(), is(4603L));
+    assertThrows(IllegalArgumentException.class, () -> test.until(1, 0.5));
+    assertThrows(IllegalArgumentException.class, () -> test.until(0.5, 0));
+  }
+
+  @Test
+  public void testRepeatAndUntilStopAtTheFirstLimit() {
+    final ConcurrentTest test = threads(thread().exec(() -> { }));
+    assertThat(test.repeat(100).until(0.99, 0.001).repetitions(), is(100));
+    assertThat(test.until(0.99, 0.001).repeat(100).repetitions(), is(100));
+    assertThat(test.repeat(10000).until(0.99, 0.001).repetitions(), is(4603));
+    assertThat(test.until(0.99, 0.001).repeat(10000).repetitions(), is(4603));
+    test.assertSuccess();
+    assertThat(test.statistics().repetitions(), is(4603L));
+  }
+}
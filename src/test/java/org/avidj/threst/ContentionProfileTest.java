@@ -0,0 +1,135 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+import org.avidj.threst.ContentionReport.LockProfile;
+import org.avidj.threst.TestRun.TestThread;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ContentionProfileTest {
+
+  @Test
+  public void testContendedMonitorIsRanked() {
+    final Object hot = new Object();
+    final Object cold = new Object();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> hold(hot, 20)).exec((t) -> touch(cold)),
+        thread().exec((t) -> hold(hot, 20)).exec((t) -> touch(cold)))
+        .profileContention()
+        .repeat(5);
+    test.assertSuccess();
+    ContentionReport report = test.contentionReport();
+    LockProfile top = report.locks().get(0);
+    assertThat(top.lock(), is("java.lang.Object"));
+    assertThat(top.site(), containsString("ContentionProfileTest.hold("));
+    assertThat(top.blockedCount(), greaterThan(0L));
+    assertThat(top.samples(), greaterThan(0L));
+    assertThat(top.waitingBlocks().keySet().iterator().next(), startsWith("session "));
+    assertThat(top.owningBlocks().keySet().iterator().next(), startsWith("session "));
+  }
+
+  // a hot and a cold lock of the code under test, created afresh for every run
+  private static class Account {
+    final ReentrantLock hot = new ReentrantLock();
+    final Object cold = new Object();
+  }
+
+  @Test
+  public void testLocksOfAllRunsAddUp() {
+    ConcurrentTest test = threads(transfer(), transfer())
+        .instances(Account::new)
+        .profileContention()
+        .repeat(20);
+    test.assertSuccess();
+    ContentionReport report = test.contentionReport();
+    LockProfile top = report.locks().get(0);
+    assertThat(top.lock(), startsWith("java.util.concurrent.locks.ReentrantLock"));
+    assertThat(top.site(), containsString("ContentionProfileTest.lock("));
+    // the locks of 20 runs are a single profile per site, not one per instance
+    assertThat(report.locks().size(), lessThanOrEqualTo(2));
+    assertThat(top.samples(), greaterThan(20L));
+  }
+
+  @Test
+  public void testTicksAreNotContention() {
+    ConcurrentTest test = threads(
+        thread().exec((t) -> t.waitFor(1)),
+        thread().exec((t) -> sleep(20)))
+        .profileContention()
+        .repeat(3);
+    test.assertSuccess();
+    assertThat(test.contentionReport().locks().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testNoReportUnlessProfiling() {
+    ConcurrentTest test = threads(thread().exec((t) -> { }));
+    test.assertSuccess();
+    assertThat(test.contentionReport(), is(nullValue()));
+  }
+
+  private static void hold(Object lock, long millis) {
+    synchronized ( lock ) {
+      sleep(millis);
+    }
+  }
+
+  private static TestThread transfer() {
+    return thread()
+        .exec((t) -> lock(t.<Account>state().hot, 10))
+        .exec((t) -> touch(t.<Account>state().cold));
+  }
+
+  private static void touch(Object lock) {
+    synchronized ( lock ) {
+      lock.hashCode();
+    }
+  }
+
+  private static void lock(ReentrantLock lock, long millis) {
+    lock.lock();
+    try {
+      sleep(millis);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
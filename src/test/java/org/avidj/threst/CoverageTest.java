@@ -0,0 +1,80 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class CoverageTest {
+
+  @Test
+  public void testSequentialTestSaturatesImmediately() {
+    ConcurrentTest test = threads(thread().exec(() -> { }).exec(() -> { })).saturate(20);
+    test.assertSuccess();
+    Coverage coverage = test.coverage();
+    assertThat(coverage.interleavings(), is(1));
+    assertThat(coverage.runs(), is(21L));
+    assertThat(coverage.saturated(), is(true));
+  }
+
+  @Test
+  public void testInterleavingsOfBlocksAreTold() {
+    // two sessions of two blocks each complete their blocks in one of 6 orders
+    ConcurrentTest test = threads(
+        thread().exec(() -> { }).exec(() -> { }),
+        thread().exec(() -> { }).exec(() -> { }))
+        .seed(1)
+        .saturate(200);
+    test.assertSuccess();
+    Coverage coverage = test.coverage();
+    assertThat(coverage.interleavings(), is(6));
+    assertThat(coverage.saturated(), is(true));
+    assertThat(coverage.interleavingsAfter(0), is(0));
+    assertThat(coverage.interleavingsAfter(coverage.runs()), is(6));
+    final long[] curve = coverage.curve();
+    for ( int i = 1; i < curve.length; i++ ) {
+      assertThat(curve[i - 1], lessThan(curve[i]));
+    }
+  }
+
+  @Test
+  public void testTrackingWithoutStopping() {
+    ConcurrentTest test = threads(thread().exec(() -> { }), thread().exec((t) -> t.waitFor(1)))
+        .repeat(50)
+        .trackCoverage();
+    test.assertSuccess();
+    assertThat(test.coverage().runs(), is(50L));
+    assertThat(test.coverage().saturated(), is(false));
+    assertThat(threads(thread().exec(() -> { })).assertSuccess().coverage(), is(nullValue()));
+  }
+
+  @Test
+  public void testSaturationMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> threads(thread()).saturate(0));
+  }
+}
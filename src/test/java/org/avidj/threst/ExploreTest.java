@@ -0,0 +1,115 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.avidj.threst.agent.InstrumentingClassLoader;
+import org.avidj.threst.fixture.MonitorCounter;
+import org.avidj.threst.fixture.SafeCounter;
+import org.avidj.threst.fixture.UnsafeCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.IntSupplier;
+
+public class ExploreTest {
+  private static final InstrumentingClassLoader LOADER = new InstrumentingClassLoader(
+      ExploreTest.class.getClassLoader(), "org.avidj.threst.fixture.");
+
+  @Test
+  public void testLostUpdateIsFound() {
+    AssertionError e = assertThrows(AssertionError.class, () -> 
+        counting(UnsafeCounter.class).explore().assertSuccess());
+    assertThat(e.getMessage(), containsString("replay"));
+  }
+
+  @Test
+  public void testExplorationCompletes() {
+    ConcurrentTest test = counting(SafeCounter.class).explore();
+    test.assertSuccess();
+    assertThat(test.explorationComplete(), is(true));
+    assertThat(test.exploredSchedules(), greaterThan(1L));
+  }
+
+  @Test
+  public void testRepetitionsLimitExploration() {
+    ConcurrentTest test = counting(SafeCounter.class).explore().repeat(2);
+    test.assertSuccess();
+    assertThat(test.explorationComplete(), is(false));
+    assertThat(test.exploredSchedules(), is(2L));
+  }
+
+  @Test
+  public void testIndependentAccessesAreNotInterleaved() {
+    ConcurrentTest shared = monitors(true).explore(Integer.MAX_VALUE);
+    shared.assertSuccess();
+    ConcurrentTest independent = monitors(false).explore(Integer.MAX_VALUE);
+    independent.assertSuccess();
+    assertThat(shared.explorationComplete(), is(true));
+    assertThat(independent.explorationComplete(), is(true));
+    assertThat(independent.exploredSchedules(), lessThan(shared.exploredSchedules()));
+  }
+
+  @Test
+  public void testPreemptionBound() {
+    ConcurrentTest unbounded = monitors(true).explore(Integer.MAX_VALUE);
+    unbounded.assertSuccess();
+    ConcurrentTest bounded = monitors(true).explore(0);
+    bounded.assertSuccess();
+    assertThat(bounded.explorationComplete(), is(true));
+    assertThat(bounded.exploredSchedules(), lessThan(unbounded.exploredSchedules()));
+  }
+
+  private static ConcurrentTest counting(Class<?> counter) {
+    return threads(increment(), increment())
+        .instances(() -> LOADER.newInstance(Runnable.class, counter.getName()));
+  }
+
+  private static TestThread increment() {
+    return thread()
+        .exec((t) -> t.<Runnable>state().run())
+        .exec((t) -> {
+          t.waitFor(1);
+          assertThat(t.<IntSupplier>state().getAsInt(), is(2));
+        });
+  }
+
+  // two sessions incrementing either a shared counter or a counter each
+  private static ConcurrentTest monitors(boolean shared) {
+    return threads(
+        thread().exec((t) -> t.<Runnable[]>state()[0].run()), 
+        thread().exec((t) -> t.<Runnable[]>state()[1].run()))
+        .instances(() -> {
+          Runnable first = LOADER.newInstance(Runnable.class, MonitorCounter.class.getName());
+          Runnable second = shared 
+              ? first : LOADER.newInstance(Runnable.class, MonitorCounter.class.getName());
+          return new Runnable[] { first, second };
+        });
+  }
+}
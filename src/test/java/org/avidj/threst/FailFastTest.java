@@ -0,0 +1,202 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FailFastTest {
+
+  @Test
+  public void testRunTimesOut() {
+    final long start = System.nanoTime();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec(() -> Thread.sleep(TimeUnit.MINUTES.toMillis(1))),
+        thread().exec(() -> { }))
+        .timeout(Duration.ofMillis(100))
+        .assertSuccess());
+    assertThat(e.getMessage(), containsString("Run timed out after"));
+    assertThat(e.getMessage(), containsString("session 0 TIMED_WAITING"));
+    assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(10)));
+  }
+
+  @Test
+  public void testFirstFailureStopsRepetitions() {
+    final AtomicInteger runs = new AtomicInteger();
+    ConcurrentTest test = threads(thread().exec(() -> {
+      runs.incrementAndGet();
+      throw new IllegalStateException();
+    }));
+    assertThrows(AssertionError.class, () -> test.repeat(1000).assertSuccess());
+    assertThat(runs.get(), is(1));
+  }
+
+  @Test
+  public void testDeadlockedWorkersAreReplaced() throws InterruptedException {
+    final Object a = new Object();
+    final Object b = new Object();
+    final AtomicBoolean deadlock = new AtomicBoolean(true);
+    ConcurrentTest test = threads(
+        thread().exec((t) -> synchronizeBoth(t, deadlock, a, b)),
+        thread().exec((t) -> synchronizeBoth(t, deadlock, b, a)));
+    ObserverService observerService = new ObserverService(1);
+    TestInstance instance = new TestInstance(test, new Budget(1, 0), new Verdict(2), observerService);
+    observerService.start();
+    try {
+      final Thread first = instance.run.workers[0];
+      instance.run.runOnce();
+      assertThat(instance.run.getAssertionError().getMessage(), containsString("Deadlock"));
+      // monitors cannot be interrupted, both workers are stuck for good
+      assertThat(instance.run.abandonedCount(), is(2));
+      assertThat(instance.run.workers[0], not(sameInstance(first)));
+      deadlock.set(false);
+      instance.run.runOnce();
+      assertThat(instance.run.hasAssertionError(), is(false));
+      assertThat(instance.run.success(), is(true));
+    } finally {
+      instance.shutdown();
+      observerService.close();
+    }
+  }
+
+  @Test
+  public void testLateAbandonedWorkerDoesNotAccountForLaterRun() throws InterruptedException {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicBoolean release = new AtomicBoolean();
+    ConcurrentTest test = threads(
+        thread().exec(() -> {
+          if ( calls.incrementAndGet() == 1 ) {
+            // ignores the interrupt of the recovery and fails long after being abandoned
+            while ( !release.get() ) {
+              Thread.onSpinWait();
+            }
+            throw new IllegalStateException("late");
+          }
+          release.set(true);
+          // give the abandoned worker time to end while this session still runs
+          Thread.sleep(30);
+        }),
+        thread().exec(() -> { }))
+        .timeout(Duration.ofMillis(300));
+    ObserverService observerService = new ObserverService(1);
+    TestInstance instance = new TestInstance(test, new Budget(2, 0), new Verdict(2), observerService);
+    observerService.start();
+    try {
+      final Thread first = instance.run.workers[0];
+      instance.run.runOnce();
+      assertThat(instance.run.getAssertionError().getMessage(), containsString("timed out"));
+      assertThat(instance.run.abandonedCount(), is(1));
+      instance.run.runOnce(1);
+      first.join(TimeUnit.SECONDS.toMillis(5));
+      assertThat(first.isAlive(), is(false));
+      assertThat(instance.run.hasAssertionError(), is(false));
+      assertThat(instance.run.success(), is(true));
+      assertThat(instance.run.getThrowables().get(0), is(nullValue()));
+    } finally {
+      instance.shutdown();
+      observerService.close();
+    }
+  }
+
+  @Test
+  public void testLateAbandonedWorkerDoesNotWaitForTicksOfLaterRun() throws InterruptedException {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicBoolean release = new AtomicBoolean();
+    final List<String> events = new CopyOnWriteArrayList<>();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> {
+          if ( calls.incrementAndGet() == 1 ) {
+            // ignores the interrupt of the recovery and waits for a tick after being abandoned
+            while ( !release.get() ) {
+              Thread.onSpinWait();
+            }
+            t.waitFor(1);
+            return;
+          }
+          release.set(true);
+          // give the abandoned worker time to register for the tick while this session runs,
+          // sleeping would allow the tick to advance
+          final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(30);
+          while ( System.nanoTime() - end < 0 ) {
+            Thread.onSpinWait();
+          }
+          events.add("ran");
+          t.waitFor(2);
+        }),
+        // stuck in waitFor in the first run, the other session never parks
+        thread().exec((t) -> {
+          t.waitFor(1);
+          events.add("tick 1");
+        }))
+        .timeout(Duration.ofMillis(300));
+    ObserverService observerService = new ObserverService(1);
+    TestInstance instance = new TestInstance(test, new Budget(2, 0), new Verdict(2), observerService);
+    observerService.start();
+    try {
+      final Thread first = instance.run.workers[0];
+      instance.run.runOnce();
+      assertThat(instance.run.getAssertionError().getMessage(), containsString("timed out"));
+      assertThat(instance.run.abandonedCount(), is(1));
+      events.clear();
+      instance.run.runOnce(1);
+      first.join(TimeUnit.SECONDS.toMillis(5));
+      // the tick must not advance while the replacement session is running
+      assertThat(events, contains("ran", "tick 1"));
+      assertThat(first.isAlive(), is(false));
+      assertThat(instance.run.hasAssertionError(), is(false));
+      assertThat(instance.run.success(), is(true));
+    } finally {
+      instance.shutdown();
+      observerService.close();
+    }
+  }
+
+  private static void synchronizeBoth(TestRun.TestThread t, AtomicBoolean deadlock, 
+      Object first, Object second) {
+    if ( !deadlock.get() ) {
+      return;
+    }
+    synchronized ( first ) {
+      t.waitFor(1);
+      synchronized ( second ) {
+        t.waitFor(2);
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.avidj.threst.agent.InstrumentingClassLoader;
+import org.avidj.threst.fixture.UnsafeCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class InstrumentationTest {
+  private static final Pattern REPLAY = Pattern.compile("replay\\(\"([^\"]+)\"\\)");
+  private static final InstrumentingClassLoader LOADER = new InstrumentingClassLoader(
+      InstrumentationTest.class.getClassLoader(), "org.avidj.threst.fixture.");
+
+  @Test
+  public void testLostUpdateIsOnlyFoundInInstrumentedCode() {
+    // without scheduling points inside the increment, it is atomic under a controlled schedule
+    counting(UnsafeCounter::new).pct(2).seed(1).repeat(200).assertSuccess();
+    AssertionError e = assertThrows(AssertionError.class, () -> 
+        counting(() -> LOADER.newInstance(Runnable.class, UnsafeCounter.class.getName()))
+        .pct(2).seed(1).repeat(200).assertSuccess());
+    assertThat(e.getMessage(), containsString("success count deviates"));
+    // the failing schedule is reproduced in a single run
+    Matcher matcher = REPLAY.matcher(e.getMessage());
+    assertThat(matcher.find(), is(true));
+    ConcurrentTest replay = counting(() -> LOADER.newInstance(Runnable.class, UnsafeCounter.class.getName()))
+        .pct(2).replay(matcher.group(1));
+    assertThrows(AssertionError.class, () -> replay.assertSuccess());
+  }
+
+  @Test
+  public void testLocksAndMonitorsAreSchedulingPoints() {
+    counting(() -> LOADER.newInstance(Runnable.class, "org.avidj.threst.fixture.SafeCounter"))
+        .pct(3).seed(1).repeat(50).assertSuccess();
+  }
+
+  @Test
+  public void testHarnessIsNotInstrumented() throws Exception {
+    assertThat(LOADER.loadClass(ConcurrentTest.class.getName()) == ConcurrentTest.class, is(true));
+    assertThat(LOADER.loadClass(UnsafeCounter.class.getName()) == UnsafeCounter.class, is(false));
+  }
+
+  private static ConcurrentTest counting(Supplier<?> counter) {
+    return threads(increment(), increment()).instances(counter);
+  }
+
+  private static TestThread increment() {
+    return thread()
+        .exec((t) -> t.<Runnable>state().run())
+        .exec((t) -> {
+          t.waitFor(1);
+          assertThat(t.<IntSupplier>state().getAsInt(), is(2));
+        });
+  }
+}
@@ -0,0 +1,102 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class JfrTest {
+
+  @BeforeAll
+  public static void assumeAvailable() {
+    assumeTrue(JfrObserver.isAvailable());
+  }
+
+  @Test
+  public void testContentionIsRecorded() {
+    final Object lock = new Object();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> {
+          synchronized ( lock ) {
+            t.waitFor(1);
+            // give the other session time to block on the monitor
+            Thread.sleep(20);
+          }
+        }),
+        thread().exec((t) -> {
+          t.waitFor(1);
+          synchronized ( lock ) {
+            lock.notifyAll();
+          }
+        }))
+        .jfr()
+        .repeat(3);
+    test.assertSuccess();
+    assertThat(test.jfr.monitorEnters(), greaterThanOrEqualTo(3L));
+    final long[] blocked = test.metrics().getThreadBlockedCounts();
+    assertThat(blocked[1], greaterThanOrEqualTo(3L));
+  }
+
+  @Test
+  public void testHarnessParksAreIgnored() {
+    final Object blocker = new Object();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> t.waitFor(1)),
+        thread().exec((t) -> {
+          t.waitFor(1);
+          LockSupport.parkNanos(blocker, 1_000_000);
+        }))
+        .jfr()
+        .repeat(5);
+    test.assertSuccess();
+    // ticks and the start of runs park in the harness, only the explicit parks count, but parks
+    // may end before the stream records them
+    assertThat(test.jfr.parks(), greaterThan(0L));
+    assertThat(test.jfr.parks(), lessThanOrEqualTo(5L));
+    assertThat(test.jfr.monitorEnters(), is(0L));
+  }
+
+  @Test
+  public void testHarnessMonitorsAreIgnored() {
+    ConcurrentTest test = threads(
+        thread().exec((t) -> t.waitFor(1)).exec((t) -> t.waitFor(3)),
+        thread().exec((t) -> t.waitFor(2)).exec((t) -> t.waitFor(4)))
+        .seed(42)
+        .jfr()
+        .repeat(200);
+    test.assertSuccess();
+    // the sessions of a controlled schedule contend for the monitor of the scheduler
+    assertThat(test.jfr.monitorEnters(), is(0L));
+    assertThat(test.jfr.monitorWaits(), is(0L));
+    assertThat(test.jfr.parks(), is(0L));
+  }
+}
@@ -0,0 +1,161 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LinearizabilityTest {
+
+  // a register of integers with get, set and increment
+  private static final SequentialSpec<Integer> REGISTER = new SequentialSpec<Integer>() {
+    @Override
+    public Integer initialState() {
+      return 0;
+    }
+
+    @Override
+    public Integer apply(Integer state, Operation operation) {
+      switch ( operation.name() ) {
+        case "get":
+          return state.equals(operation.result()) ? state : null;
+        case "set":
+          return operation.argument();
+        case "increment":
+          return operation.result().equals(state + 1) ? state + 1 : null;
+        default:
+          throw new IllegalArgumentException(operation.name());
+      }
+    }
+  };
+
+  // a map from integers to integers with merge, the state is the value of a single key
+  private static final SequentialSpec<Integer> COUNTERS = new SequentialSpec<Integer>() {
+    @Override
+    public Integer initialState() {
+      return 0;
+    }
+
+    @Override
+    public Integer apply(Integer state, Operation operation) {
+      return operation.result().equals(state + 1) ? state + 1 : null;
+    }
+
+    @Override
+    public Object key(Operation operation) {
+      return operation.argument();
+    }
+  };
+
+  @Test
+  public void testOverlappingOperations() {
+    // the set overlaps both gets, the first get may see it but then the second one must as well
+    List<Operation> history = Arrays.asList(
+        new Operation(0, "set", 1, null, 1, 10),
+        new Operation(1, "get", null, 1, 2, 3),
+        new Operation(1, "get", null, 0, 4, 5));
+    assertThat(LinearizabilityChecker.check(REGISTER, history), 
+        startsWith("History is not linearizable"));
+    List<Operation> reordered = Arrays.asList(
+        new Operation(0, "set", 1, null, 1, 10),
+        new Operation(1, "get", null, 0, 2, 3),
+        new Operation(1, "get", null, 1, 4, 5));
+    assertThat(LinearizabilityChecker.check(REGISTER, reordered), is(nullValue()));
+  }
+
+  @Test
+  public void testRealTimeOrder() {
+    List<Operation> history = Arrays.asList(
+        new Operation(0, "set", 1, null, 1, 2),
+        new Operation(1, "get", null, 0, 3, 4));
+    assertThat(LinearizabilityChecker.check(REGISTER, history), 
+        containsString("at most 1 of them could be linearized"));
+  }
+
+  @Test
+  public void testAtomicCounter() {
+    threads(incrementing(), incrementing(), incrementing())
+        .linearizable(REGISTER)
+        .instances(AtomicInteger::new)
+        .stress(200)
+        .repeat(5)
+        .assertSuccess();
+  }
+
+  @Test
+  public void testLostUpdate() {
+    final AtomicInteger counter = new AtomicInteger();
+    final TestThread racy = thread().exec((t) -> t.record("increment", null, () -> {
+      final int value = counter.get();
+      Thread.yield();
+      counter.set(value + 1);
+      return value + 1;
+    }));
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(racy, racy.copy())
+        .linearizable(REGISTER)
+        .stress(1000)
+        .assertSuccess());
+    assertThat(e.getMessage(), startsWith("History is not linearizable"));
+  }
+
+  @Test
+  public void testLongHistoryPerKey() {
+    final Map<Integer, Integer> counters = new ConcurrentHashMap<>();
+    final TestThread[] more = new TestThread[3];
+    for ( int i = 0; i < more.length; i++ ) {
+      more[i] = merging(counters, i + 1);
+    }
+    threads(merging(counters, 0), more)
+        .linearizable(COUNTERS)
+        .stress(25000)
+        .assertSuccess();
+  }
+
+  private static TestThread incrementing() {
+    return thread().exec((t) -> {
+      final AtomicInteger counter = t.state();
+      t.record("increment", null, counter::incrementAndGet);
+    });
+  }
+
+  private static TestThread merging(Map<Integer, Integer> counters, int session) {
+    final int[] next = { session };
+    return thread().exec((t) -> {
+      final int key = next[0]++ % 64;
+      t.record("merge", key, () -> counters.merge(key, 1, Integer::sum));
+    });
+  }
+}
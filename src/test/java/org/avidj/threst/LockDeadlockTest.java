@@ -0,0 +1,99 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.stringContainsInOrder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class LockDeadlockTest {
+
+  @Test
+  public void testReentrantLockDeadlock() {
+    final Lock a = new ReentrantLock();
+    final Lock b = new ReentrantLock();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> lockBoth(t, a, b)),
+        thread().exec((t) -> lockBoth(t, b, a)))
+        .assertSuccess());
+    assertThat(e.getMessage(), stringContainsInOrder("Deadlock detected:", "ReentrantLock"));
+    assertThat(e.getMessage(), not(containsString("starving")));
+  }
+
+  @Test
+  public void testReadWriteLockDeadlock() {
+    final ReadWriteLock a = new ReentrantReadWriteLock();
+    final ReadWriteLock b = new ReentrantReadWriteLock();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> lockBoth(t, a.writeLock(), b.writeLock())),
+        thread().exec((t) -> lockBoth(t, b.writeLock(), a.writeLock())))
+        .assertSuccess());
+    assertThat(e.getMessage(), stringContainsInOrder("Deadlock detected:", "ReentrantReadWriteLock"));
+  }
+
+  @Test
+  public void testAllCyclesAreReported() {
+    final Object a = new Object();
+    final Object b = new Object();
+    final Lock c = new ReentrantLock();
+    final Lock d = new ReentrantLock();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> synchronizeBoth(t, a, b)),
+        thread().exec((t) -> synchronizeBoth(t, b, a)),
+        thread().exec((t) -> lockBoth(t, c, d)),
+        thread().exec((t) -> lockBoth(t, d, c)))
+        .assertSuccess());
+    assertThat(e.getMessage(), stringContainsInOrder("Deadlock detected:", "BLOCKED on java.lang.Object"));
+    assertThat(e.getMessage(), containsString("WAITING on java.util.concurrent.locks.ReentrantLock"));
+  }
+
+  // acquires first, waits until all threads acquired their first lock, then acquires second
+  private static void lockBoth(TestRun.TestThread t, Lock first, Lock second) {
+    first.lock();
+    try {
+      t.waitFor(1);
+      second.lock();
+      second.unlock();
+    } finally {
+      first.unlock();
+    }
+  }
+
+  private static void synchronizeBoth(TestRun.TestThread t, Object first, Object second) {
+    synchronized ( first ) {
+      t.waitFor(1);
+      synchronized ( second ) {
+        t.waitFor(2);
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class MetricsTest {
+
+  @Test
+  public void testMetricsAndListener() throws Exception {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName("org.avidj.threst:type=ConcurrentTest,name=\"metrics\"");
+    final AtomicInteger runs = new AtomicInteger();
+    final AtomicInteger ticks = new AtomicInteger();
+    final AtomicInteger registered = new AtomicInteger();
+    ConcurrentTest test = threads(
+        thread().exec((t) -> {
+          t.waitFor(1);
+          if ( server.isRegistered(name) ) {
+            registered.incrementAndGet();
+          }
+        }),
+        thread().exec((t) -> t.waitFor(1)))
+        .repeat(100)
+        .mxBean("metrics")
+        .listener(new ConcurrentTestListener() {
+          @Override
+          public void runFinished(boolean success, long latencyNanos) {
+            runs.incrementAndGet();
+          }
+
+          @Override
+          public void tickAdvanced(int tick, long latencyNanos) {
+            ticks.incrementAndGet();
+          }
+        })
+        .assertSuccess();
+    assertThat(registered.get(), is(100));
+    assertThat(server.isRegistered(name), is(false));
+    assertThat(runs.get(), is(100));
+    assertThat(ticks.get(), is(100));
+    ConcurrentTestMXBean metrics = test.metrics();
+    assertThat(metrics.getRepetitions(), is(100L));
+    assertThat(metrics.getSuccesses(), is(100L));
+    assertThat(metrics.getFailures(), is(0L));
+    assertThat(metrics.getTickAdvances(), is(100L));
+    assertThat(metrics.getRunLatencyMaxMicros(), greaterThan(0L));
+    assertThat(metrics.getThreadWaitedCounts().length, is(2));
+  }
+
+  @Test
+  public void testFailuresAreCounted() {
+    ConcurrentTest test = threads(thread().exec(() -> { throw new IllegalStateException(); }));
+    assertThrows(AssertionError.class, () -> test.assertSuccess());
+    assertThat(test.metrics().getFailures(), is(1L));
+  }
+}
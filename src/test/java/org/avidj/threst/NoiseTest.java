@@ -0,0 +1,92 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NoiseTest {
+
+  @Test
+  public void testDecisionsAreReproducible() {
+    Noise noise = new Noise(2, 0.5);
+    Noise same = new Noise(2, 0.5);
+    noise.reset(42, 7);
+    same.reset(42, 7);
+    int delays = 0;
+    for ( int i = 0; i < 1000; i++ ) {
+      final long decision = noise.decide(i % 2);
+      assertThat(same.decide(i % 2), is(decision));
+      if ( decision != Noise.NONE ) {
+        delays++;
+        assertThat(decision >>> 2, lessThan(Noise.MAX_PARK_NANOS));
+      }
+    }
+    // about half of the points are delayed
+    assertThat(delays, greaterThan(400));
+    assertThat(delays, lessThan(600));
+    // another repetition is delayed differently
+    same.reset(42, 8);
+    boolean differs = false;
+    noise.reset(42, 7);
+    for ( int i = 0; i < 100; i++ ) {
+      differs |= noise.decide(0) != same.decide(0);
+    }
+    assertThat(differs, is(true));
+  }
+
+  @Test
+  public void testFailureReportsNoise() {
+    final AtomicInteger runs = new AtomicInteger();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec(() -> { }).exec(() -> { }),
+        thread().exec(() -> { }).exec(() -> {
+          if ( runs.incrementAndGet() == 3 ) {
+            throw new IllegalStateException();
+          }
+        }))
+        .noise(1, 42)
+        .repeat(10)
+        .assertSuccess());
+    assertThat(e.getMessage(), containsString("seed 42, repetition 2"));
+    assertThat(e.getMessage(), containsString(".noise(1.0, 42L) in repetition 3"));
+  }
+
+  @Test
+  public void testNoNoiseUnderControlledSchedule() {
+    ConcurrentTest test = threads(thread().exec(() -> { })).noise(1).seed(1);
+    test.assertSuccess();
+    assertThat(test.noiseIntensity(), is(0.0));
+    assertThat(threads(thread()).noise(0.5).noiseIntensity(), not(is(0.0)));
+    assertThrows(IllegalArgumentException.class, () -> threads(thread()).noise(0));
+  }
+}
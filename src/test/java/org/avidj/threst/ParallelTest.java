@@ -0,0 +1,77 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.stringContainsInOrder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelTest {
+
+  @Test
+  public void testInstancesAreIsolated() {
+    threads(
+        thread().exec((t) -> {
+          assertThat(t.<AtomicInteger>state().incrementAndGet(), lessThanOrEqualTo(2));
+        }),
+        thread().exec((t) -> {
+          assertThat(t.<AtomicInteger>state().incrementAndGet(), lessThanOrEqualTo(2));
+        }))
+        .instances(AtomicInteger::new)
+        .parallelism(4)
+        .repeat(1000)
+        .assertSuccess();
+  }
+
+  @Test
+  public void testAllRepetitionsAreExecuted() {
+    final AtomicInteger runs = new AtomicInteger();
+    threads(
+        thread().exec(() -> runs.incrementAndGet()))
+        .parallelism(3)
+        .repeat(1000)
+        .assertSuccess();
+    assertThat(runs.get(), is(1000));
+  }
+
+  @Test
+  public void testFailureOfOneInstanceFailsTest() {
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> {
+          if ( t.<AtomicInteger>state().incrementAndGet() > 0 ) {
+            throw new IllegalStateException("fails in every instance");
+          }
+        }))
+        .instances(AtomicInteger::new)
+        .parallelism(4)
+        .repeat(100)
+        .assertSuccess());
+    assertThat(e.getMessage(), stringContainsInOrder("success count deviates"));
+  }
+}
@@ -0,0 +1,51 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RunHarnessTest {
+
+  @Test
+  public void testRunsReuseTheSessions() {
+    final AtomicInteger blocks = new AtomicInteger();
+    try ( RunHarness harness = new RunHarness(threads(
+        thread().exec((t) -> {
+          t.waitFor(1);
+          blocks.incrementAndGet();
+        }),
+        thread().exec((t) -> {
+          t.waitFor(2);
+          blocks.incrementAndGet();
+        }))) ) {
+      for ( int run = 1; run <= 10; run++ ) {
+        assertThat(harness.runOnce(), is(2));
+        assertThat(blocks.get(), is(2 * run));
+      }
+    }
+  }
+}
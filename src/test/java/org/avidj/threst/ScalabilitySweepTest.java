@@ -0,0 +1,90 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ScalabilitySweep.sweep;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ScalabilitySweepTest {
+
+  @Test
+  public void testSessionCounts() {
+    assertThat(ScalabilitySweep.sessionCounts(1), contains(1));
+    assertThat(ScalabilitySweep.sessionCounts(4), contains(1, 2, 4));
+    assertThat(ScalabilitySweep.sessionCounts(6), contains(1, 2, 4, 6));
+  }
+
+  @Test
+  public void testAmdahlFit() {
+    final int[] sessions = { 1, 2, 4, 8, 16 };
+    final double[] throughputs = new double[sessions.length];
+    for ( int p = 0; p < sessions.length; p++ ) {
+      throughputs[p] = 1000 / ( 0.2 + 0.8 / sessions[p] );
+    }
+    ScalingCurve curve = new ScalingCurve(sessions, throughputs);
+    assertThat(curve.serialFraction(), is(closeTo(0.2, 1e-9)));
+    assertThat(curve.speedup(0), is(1.0));
+    assertThat(curve.speedup(4), is(closeTo(4.0, 1e-9)));
+    assertThat(curve.efficiency(4), is(closeTo(0.25, 1e-9)));
+    assertThat(curve.predictedSpeedup(16), is(closeTo(4.0, 1e-9)));
+    assertThat(new ScalingCurve(sessions, new double[] { 5, 10, 20, 40, 80 }).serialFraction(), 
+        is(0.0));
+  }
+
+  @Test
+  public void testSweep() {
+    final AtomicLongArray counters = new AtomicLongArray(4);
+    ScalingCurve curve = sweep((i) -> thread().exec(() -> counters.incrementAndGet(i)))
+        .upTo(4)
+        .configure((test) -> test.stress(Duration.ofMillis(20)))
+        .run();
+    assertThat(curve.size(), is(3));
+    assertThat(curve.sessions(2), is(4));
+    assertThat(curve.throughput(0), is(greaterThan(0.0)));
+    assertThat(curve.speedup(0), is(1.0));
+    assertThat(curve.toCsv(), startsWith("sessions,throughput,speedup,efficiency"));
+    assertThat(curve.toCsv().split("\n").length, is(4));
+    assertThat(curve.toJson(), startsWith("{\"serialFraction\":"));
+    assertThat(curve.toJson(), containsString("{\"sessions\":4,"));
+  }
+
+  @Test
+  public void testFailingPointFailsTheSweep() {
+    assertThrows(AssertionError.class, () -> sweep((i) -> thread().exec(() -> {
+      if ( i == 1 ) {
+        throw new IllegalStateException();
+      }
+    })).upTo(2).run());
+  }
+}
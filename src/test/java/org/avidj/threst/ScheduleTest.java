@@ -0,0 +1,129 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ScheduleTest {
+  private static final Pattern REPLAY = Pattern.compile("replay\\(\"([^\"]+)\"\\)");
+
+  // a counter incremented in two steps, so that increments can be lost
+  private static class Counter {
+    int value;
+    final int[] read = new int[2];
+  }
+
+  @Test
+  public void testFailingScheduleIsReplayed() {
+    AssertionError e = assertThrows(AssertionError.class, () -> lostUpdate().seed(42).repeat(100)
+        .assertSuccess());
+    final String schedule = schedule(e);
+    // the same seed finds the same schedule
+    AssertionError again = assertThrows(AssertionError.class, () -> lostUpdate().seed(42).repeat(100)
+        .assertSuccess());
+    assertThat(schedule(again), is(schedule));
+    // replaying the schedule fails in a single run, with the same schedule
+    ConcurrentTest replay = lostUpdate().replay(schedule);
+    AssertionError replayed = assertThrows(AssertionError.class, () -> replay.assertSuccess());
+    assertThat(schedule(replayed), is(schedule));
+    assertThat(replay.statistics().repetitions(), is(1L));
+  }
+
+  // a signal created for every run, so that every run can wait for it
+  private static class Signal {
+    boolean signalled;
+  }
+
+  @Test
+  public void testBlockedSessionPassesOnTheToken() {
+    final AtomicInteger waits = new AtomicInteger();
+    threads(
+        thread().exec((t) -> {
+          final Signal signal = t.state();
+          synchronized ( signal ) {
+            while ( !signal.signalled ) {
+              waits.incrementAndGet();
+              signal.wait();
+            }
+          }
+        }),
+        thread().exec((t) -> {
+          final Signal signal = t.state();
+          synchronized ( signal ) {
+            signal.signalled = true;
+            signal.notifyAll();
+          }
+        }))
+        .seed(7)
+        .repeat(20)
+        .instances(Signal::new)
+        .assertSuccess();
+    // the waiting session held the token in some runs, it had to pass it on while waiting
+    assertThat(waits.get(), greaterThan(1));
+  }
+
+  @Test
+  public void testMalformedSchedule() {
+    assertThrows(IllegalArgumentException.class, () -> lostUpdate().replay("42"));
+    assertThrows(IllegalArgumentException.class, () -> lostUpdate().replay("42:0.x"));
+    assertThrows(IllegalArgumentException.class, () -> lostUpdate().replay("42:0.2"));
+  }
+
+  private static ConcurrentTest lostUpdate() {
+    return threads(increment(0), increment(1)).instances(Counter::new);
+  }
+
+  private static TestThread increment(int session) {
+    return thread()
+        .exec((t) -> {
+          Counter counter = t.state();
+          counter.read[session] = counter.value;
+        })
+        .exec((t) -> {
+          Counter counter = t.state();
+          counter.value = counter.read[session] + 1;
+        })
+        .exec((t) -> {
+          t.waitFor(1);
+          assertThat(t.<Counter>state().value, is(2));
+        });
+  }
+
+  private static String schedule(AssertionError e) {
+    assertThat(e.getMessage(), containsString("Controlled schedule"));
+    Matcher matcher = REPLAY.matcher(e.getMessage());
+    assertThat(matcher.find(), is(true));
+    return matcher.group(1);
+  }
+}
@@ -0,0 +1,85 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartBarrierTest {
+
+  @Test
+  public void testSessionsStartTogether() {
+    final AtomicInteger runs = new AtomicInteger();
+    ConcurrentTest test = threads(session(runs), session(runs), session(runs), session(runs))
+        .startBarrier()
+        .repeat(200);
+    test.assertSuccess();
+    assertThat(runs.get(), is(4 * 200));
+    // the barrier spins for 100 us before it parks, awake sessions leave it within microseconds
+    assertThat(test.statistics().startSkew(), lessThan(Duration.ofMillis(1)));
+  }
+
+  @Test
+  public void testBarrierReducesSkew() {
+    assumeTrue(Runtime.getRuntime().availableProcessors() >= 4, 
+        "sessions can only start together on a core each");
+    final long withBarrier = medianSkew(true);
+    final long withoutBarrier = medianSkew(false);
+    assertThat(withBarrier, lessThanOrEqualTo(withoutBarrier));
+  }
+
+  private static long medianSkew(boolean startBarrier) {
+    final AtomicInteger runs = new AtomicInteger();
+    ConcurrentTest test = threads(session(runs), session(runs), session(runs), session(runs))
+        .repeat(1000);
+    if ( startBarrier ) {
+      test.startBarrier();
+    }
+    test.assertSuccess();
+    return test.metrics().getStartSkewP50Nanos();
+  }
+
+  @Test
+  public void testVirtualThreadsStartTogether() {
+    final AtomicInteger runs = new AtomicInteger();
+    TestThread[] more = new TestThread[99];
+    for ( int i = 0; i < more.length; i++ ) {
+      more[i] = session(runs);
+    }
+    threads(session(runs), more).virtualThreads().startBarrier().repeat(20).assertSuccess();
+    assertThat(runs.get(), is(100 * 20));
+  }
+
+  private static TestThread session(AtomicInteger runs) {
+    return thread().exec(() -> runs.incrementAndGet()).exec((t) -> t.waitFor(1));
+  }
+}
@@ -23,12 +23,22 @@ import static org.avidj.threst.ConcurrentTest.thread;
 import static org.avidj.threst.ConcurrentTest.threads;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
 public class StarvationTest {
 
   private static final Logger LOG = LoggerFactory.getLogger(StarvationTest.class);
@@ -36,7 +46,7 @@ public class StarvationTest {
   @Test
   public void testStarve() {
     final Object lock = new Object();
-    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+    final ConcurrentTest test = threads(
             thread().exec((t) -> {
               t.waitFor(1);
               synchronized (lock) {
@@ -46,8 +56,114 @@ public class StarvationTest {
             thread().exec((t) -> {
               t.waitFor(2);
               LOG.info("Waited for 2, the other thread should be starving.");
-            }))
-            .assertSuccess());
+            }));
+    AssertionError e = assertThrows(AssertionError.class, () -> test.assertSuccess());
     assertThat(e.getMessage(), stringContainsInOrder("Threads are starving. Missed signal?"));
+    // starvation can only be detected by polling
+    assertThat(test.observerPollCount(), greaterThan(0L));
+    assertThat(e.getMessage(), containsString("waits on java.lang.Object@"));
+  }
+
+  @Test
+  public void testConfiguredThreshold() {
+    final Object lock = new Object();
+    final long start = System.nanoTime();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec(() -> {
+          synchronized ( lock ) {
+            lock.wait();
+          }
+        }))
+        .starvationThreshold(Duration.ofMillis(100))
+        .assertSuccess());
+    assertThat(e.getMessage(), containsString("the starvation threshold is 100 ms"));
+    assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(2)));
+  }
+
+  @Test
+  public void testTimedWaitsAreNotStarving() {
+    final Object lock = new Object();
+    threads(thread().exec(() -> {
+      synchronized ( lock ) {
+        lock.wait(300);
+      }
+    }))
+        .starvationThreshold(Duration.ofMillis(50))
+        .assertSuccess();
+  }
+
+  @Test
+  public void testFinishedSessionIsNotStarving() {
+    threads(
+        thread().exec(() -> { }),
+        thread().exec(() -> Thread.sleep(700)))
+        .assertSuccess();
+  }
+
+  @Test
+  public void testRunsWithoutWaitsKeepTheThreshold() {
+    final ConcurrentTest test = threads(
+        thread().exec(() -> { }),
+        thread().exec(() -> Thread.sleep(100)))
+        .repeat(3);
+    test.assertSuccess();
+    assertThat(test.starvation.nanos(), is(StarvationThreshold.INITIAL_NANOS));
+  }
+
+  @Test
+  public void testSlowHealthyWaitIsNotStarving() {
+    final long start = System.nanoTime();
+    signalAfter((run) -> 600).assertSuccess();
+    assertThat(System.nanoTime() - start, greaterThan(TimeUnit.MILLISECONDS.toNanos(600)));
+  }
+
+  @Test
+  public void testFastRunsDoNotFlagSlowerHealthyRun() {
+    final ConcurrentTest test = signalAfter((run) -> ( run < 19 ) ? 30 : 600).repeat(20);
+    test.assertSuccess();
+    assertThat(test.statistics().repetitions(), is(20L));
+  }
+
+  // One session waits for a signal of the other, which sends it after the given number of 
+  // milliseconds, depending on the index of the run. Both sleeping and waiting, no session runs.
+  // The signal is not a class of the harness package, waits on those are ignored.
+  private static ConcurrentTest signalAfter(IntUnaryOperator millis) {
+    final AtomicInteger runs = new AtomicInteger();
+    return threads(
+        thread().exec((t) -> {
+          final AtomicBoolean signal = t.state();
+          synchronized ( signal ) {
+            while ( !signal.get() ) {
+              signal.wait();
+            }
+          }
+        }),
+        thread().exec((t) -> {
+          final AtomicBoolean signal = t.state();
+          Thread.sleep(millis.applyAsInt(runs.getAndIncrement()));
+          synchronized ( signal ) {
+            signal.set(true);
+            signal.notifyAll();
+          }
+        }))
+        .instances(AtomicBoolean::new);
+  }
+
+  @Test
+  public void testThresholdAdaptsToHealthyRuns() {
+    final StarvationThreshold threshold = new StarvationThreshold();
+    assertThat(threshold.nanos(), is(StarvationThreshold.INITIAL_NANOS));
+    threshold.healthyRun(0);
+    assertThat(threshold.nanos(), is(StarvationThreshold.INITIAL_NANOS));
+    // fast runs do not lower the threshold
+    threshold.healthyRun(TimeUnit.MILLISECONDS.toNanos(1));
+    assertThat(threshold.nanos(), is(StarvationThreshold.INITIAL_NANOS));
+    threshold.healthyRun(TimeUnit.MILLISECONDS.toNanos(300));
+    threshold.healthyRun(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(threshold.nanos(), is(TimeUnit.MILLISECONDS.toNanos(3000)));
+    threshold.healthyRun(TimeUnit.SECONDS.toNanos(5));
+    assertThat(threshold.nanos(), is(StarvationThreshold.MAX_NANOS));
+    threshold.fix(42);
+    assertThat(threshold.nanos(), is(42L));
   }
 }
@@ -0,0 +1,99 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.avidj.threst.StressReport.Latencies;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StressTest {
+
+  @Test
+  public void testOperationCount() {
+    final AtomicLong counter = new AtomicLong();
+    ConcurrentTest test = threads(
+        thread().exec(counter::incrementAndGet),
+        thread().exec(counter::incrementAndGet).exec(counter::incrementAndGet))
+        .stress(1000)
+        .repeat(3);
+    test.assertSuccess();
+    assertThat(counter.get(), is(3 * ( 1000L + 2000L )));
+    StressReport report = test.stressReport();
+    assertThat(report.sessions().get(0).operations(), is(3000L));
+    assertThat(report.sessions().get(1).operations(), is(3000L));
+    Latencies total = report.total();
+    assertThat(total.operations(), is(6000L));
+    assertThat(total.operationsPerSecond(), is(greaterThan(0.0)));
+    assertThat(total.p50(), is(lessThanOrEqualTo(total.p99())));
+    assertThat(total.p99(), is(lessThanOrEqualTo(total.p999())));
+    assertThat(total.p999(), is(lessThanOrEqualTo(total.max())));
+  }
+
+  @Test
+  public void testDuration() {
+    ConcurrentTest test = threads(
+        thread().exec(() -> Thread.sleep(1)),
+        thread().exec(() -> Thread.sleep(1)))
+        .stress(Duration.ofMillis(50));
+    test.assertSuccess();
+    assertThat(test.statistics().elapsed(), is(greaterThanOrEqualTo(Duration.ofMillis(50))));
+    for ( Latencies session : test.stressReport().sessions() ) {
+      assertThat(session.operations(), is(greaterThan(5L)));
+      assertThat(session.p50(), is(greaterThanOrEqualTo(Duration.ofMillis(1))));
+    }
+  }
+
+  @Test
+  public void testFailureEndsTheStress() {
+    final AtomicInteger operations = new AtomicInteger();
+    ConcurrentTest test = threads(
+        thread().exec(() -> { 
+          if ( operations.incrementAndGet() > 100 ) {
+            throw new IllegalStateException("broken after 100 operations");
+          }
+        }),
+        thread().exec(() -> { }))
+        .stress(Duration.ofSeconds(10));
+    assertThrows(AssertionError.class, test::assertSuccess);
+    assertThat(test.stressReport().sessions().get(0).operations(), is(100L));
+    assertThat(test.statistics().elapsed(), is(lessThanOrEqualTo(Duration.ofSeconds(5))));
+  }
+
+  @Test
+  public void testNotWithControlledSchedule() {
+    ConcurrentTest test = threads(thread().exec(() -> { }))
+        .stress(10)
+        .pct(2);
+    assertThrows(IllegalStateException.class, test::assertSuccess);
+  }
+}
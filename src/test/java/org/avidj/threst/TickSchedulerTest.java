@@ -0,0 +1,146 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TickSchedulerTest {
+
+  @Test
+  public void testSessionsOnTheSameTickResumeTogether() throws InterruptedException {
+    final List<String> resumed = new CopyOnWriteArrayList<>();
+    final Thread[] workers = new Thread[3];
+    final TickScheduler scheduler = new TickScheduler(workers, new ObserverService(1));
+    for ( int i = 0; i < workers.length; i++ ) {
+      final int session = i;
+      final int tick = ( session < 2 ) ? 1 : 2;
+      workers[i] = new Thread(() -> {
+        try {
+          scheduler.await(session, tick);
+          resumed.add(session + "@" + scheduler.tick);
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for ( Thread worker : workers ) {
+      worker.start();
+    }
+
+    // the sessions waiting for tick 1 resume, the session waiting for tick 2 stays parked
+    advanceWhenAllParked(scheduler, 0);
+    assertThat(scheduler.tick, is(1));
+    workers[0].join();
+    workers[1].join();
+    assertThat(resumed, containsInAnyOrder("0@1", "1@1"));
+    assertThat(workers[2].getState(), is(Thread.State.WAITING));
+
+    advanceWhenAllParked(scheduler, 2);
+    workers[2].join();
+    assertThat(scheduler.tick, is(2));
+    assertThat(resumed.get(2), is("2@2"));
+    assertThat(scheduler.resumes(), is(3));
+  }
+
+  @Test
+  public void testTicksAreReachedInOrder() throws InterruptedException {
+    final List<Integer> resumed = new CopyOnWriteArrayList<>();
+    final int[] ticks = { 5, 2, 9, 3 };
+    final Thread[] workers = new Thread[ticks.length];
+    final TickScheduler scheduler = new TickScheduler(workers, new ObserverService(1));
+    for ( int i = 0; i < workers.length; i++ ) {
+      final int session = i;
+      workers[i] = new Thread(() -> {
+        try {
+          scheduler.await(session, ticks[session]);
+          resumed.add(scheduler.tick);
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    for ( Thread worker : workers ) {
+      worker.start();
+    }
+
+    // ticks nobody waits for are skipped, each advance wakes exactly the next session
+    for ( int finished = 0; finished < workers.length; finished++ ) {
+      advanceWhenAllParked(scheduler, finished);
+      while ( resumed.size() <= finished ) {
+        Thread.onSpinWait();
+      }
+    }
+    for ( Thread worker : workers ) {
+      worker.join();
+    }
+    assertThat(resumed, contains(2, 3, 5, 9));
+  }
+
+  @Test
+  public void testAdvanceIfParkedRequiresAnUnchangedSnapshot() throws InterruptedException {
+    final Thread[] workers = new Thread[1];
+    final TickScheduler scheduler = new TickScheduler(workers, new ObserverService(1));
+    workers[0] = new Thread(() -> {
+      try {
+        scheduler.await(0, 1);
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    workers[0].start();
+    while ( workers[0].getState() != Thread.State.WAITING ) {
+      Thread.onSpinWait();
+    }
+
+    // a session resumed since the snapshot, so the observer must take a new one
+    assertThat(scheduler.advanceIfParked(scheduler.resumes() - 1), is(false));
+    assertThat(scheduler.advanceIfParked(scheduler.resumes()), is(true));
+    workers[0].join();
+    assertThat(scheduler.tick, is(1));
+  }
+
+  @Test
+  public void testPassedTickIsRejected() throws InterruptedException {
+    final TickScheduler scheduler = 
+        new TickScheduler(new Thread[] { Thread.currentThread() }, new ObserverService(1));
+    scheduler.tick = 2;
+    scheduler.await(0, 2);
+    assertThrows(RuntimeException.class, () -> scheduler.await(0, 1));
+
+    scheduler.reset();
+    assertThat(scheduler.tick, is(0));
+    assertThat(scheduler.advanceIfAllParked(0), is(false));
+  }
+
+  private static void advanceWhenAllParked(TickScheduler scheduler, int finished) {
+    while ( !scheduler.advanceIfAllParked(finished) ) {
+      Thread.onSpinWait();
+    }
+  }
+}
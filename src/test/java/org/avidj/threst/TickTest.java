@@ -24,12 +24,21 @@ import static org.avidj.threst.ConcurrentTest.thread;
 import static org.avidj.threst.ConcurrentTest.threads;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 
+import org.avidj.threst.TestRun.TestThread;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 public class TickTest {
   private static final Logger LOG = LoggerFactory.getLogger(TickTest.class);
 
@@ -129,4 +138,77 @@ public class TickTest {
         .repeat(10000)
         .assertSuccess();
   }  
+
+  @Test
+  public void testDenseTicksWithManyThreads() {
+    final int sessions = 64;
+    final List<Integer> order = new CopyOnWriteArrayList<>();
+    TestThread[] more = new TestThread[sessions - 1];
+    for ( int i = 0; i < more.length; i++ ) {
+      more[i] = waitAndRecord(sessions - i - 1, order);
+    }
+    ConcurrentTest test = threads(waitAndRecord(sessions, order), more).repeat(10);
+    test.assertSuccess();
+    // every session ran exactly when its tick was reached
+    for ( int run = 0; run < 10; run++ ) {
+      assertThat(order.subList(run * sessions, ( run + 1 ) * sessions), 
+          contains(IntStream.rangeClosed(1, sessions).boxed().collect(Collectors.toList()).toArray()));
+    }
+  }
+
+  @Test
+  public void testSessionReleasedFromTickIsNotSkipped() {
+    final List<Integer> order = new CopyOnWriteArrayList<>();
+    threads(
+        thread().exec((t) -> {
+          t.waitFor(1);
+          order.add(1);
+          // released from tick 1 but may not run yet, tick 3 must not be reached before tick 2
+          t.waitFor(2);
+          order.add(2);
+        }),
+        thread().exec((t) -> {
+          t.waitFor(3);
+          order.add(3);
+        }))
+        .repeat(1000)
+        .assertSuccess();
+    for ( int run = 0; run < 1000; run++ ) {
+      assertThat(order.subList(run * 3, ( run + 1 ) * 3), contains(1, 2, 3));
+    }
+  }
+
+  @Test
+  public void testTicksDoNotWaitForThePoll() {
+    final int ticks = 100;
+    final int repetitions = 50;
+    final ConcurrentTest test = threads(
+        thread().exec((t) -> {
+          for ( int tick = 1; tick <= ticks; tick += 2 ) {
+            t.waitFor(tick);
+          }
+        }),
+        thread().exec((t) -> {
+          for ( int tick = 2; tick <= ticks; tick += 2 ) {
+            t.waitFor(tick);
+          }
+        }))
+        .repeat(repetitions);
+    final long start = System.nanoTime();
+    test.assertSuccess();
+    final double ticksPerSecond = 
+        ticks * repetitions * 1e9 / Math.max(1, System.nanoTime() - start);
+    LOG.info("{} ticks per second", (long) ticksPerSecond);
+    // advancing only when polled, a tick would take at least one poll interval
+    final double polledTicksPerSecond = 
+        TimeUnit.SECONDS.toMillis(1) / (double) TestRun.SLEEP_INTERVAL;
+    assertThat(ticksPerSecond, greaterThan(10 * polledTicksPerSecond));
+  }
+
+  private static TestThread waitAndRecord(int tick, List<Integer> order) {
+    return thread().exec((t) -> {
+      t.waitFor(tick);
+      order.add(tick);
+    });
+  }
 }
@@ -0,0 +1,140 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.stringContainsInOrder;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class TraceTest {
+  private static final String TRACE = "Trace of the failing run: ";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testFailedRunIsDumped() throws IOException {
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> t.waitFor(1)).exec((t) -> {
+          throw new IllegalStateException();
+        }),
+        thread().exec((t) -> t.waitFor(1)))
+        .traceDirectory(directory)
+        .assertSuccess());
+    final String timeline = TraceReader.render(traceOf(e));
+    assertThat(timeline, stringContainsInOrder("session 0:", "block 0 started", 
+        "waits for tick 1", "resumed at tick 1", "block 0 ended", "block 1 started", 
+        "failed in block 1", "session 1:", "observer:", "advanced to tick 1"));
+  }
+
+  @Test
+  public void testObserverDecisionIsTraced() throws IOException {
+    final Object a = new Object();
+    final Object b = new Object();
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec((t) -> synchronizeBoth(t, a, b)),
+        thread().exec((t) -> synchronizeBoth(t, b, a)))
+        .traceDirectory(directory)
+        .assertSuccess());
+    assertThat(TraceReader.render(traceOf(e)), containsString("detected a deadlock"));
+  }
+
+  @Test
+  public void testOnlyTheLatestEventsAreKept() throws IOException {
+    TraceRecorder trace = new TraceRecorder(1, 4);
+    trace.reset();
+    for ( int i = 0; i < 10; i++ ) {
+      trace.record(0, TraceEvent.BLOCK_STARTED, i);
+    }
+    trace.record(trace.observer(), TraceEvent.TIMED_OUT, -1);
+    final String timeline = TraceReader.render(trace.dump(directory));
+    assertThat(timeline, stringContainsInOrder("block 6 started", "block 9 started", "timed out"));
+    assertThat(timeline, not(containsString("block 5 started")));
+  }
+
+  @Test
+  public void testOldTracesAreDeleted() throws IOException {
+    final long past = System.currentTimeMillis() - 100000;
+    for ( int i = 0; i < TraceRecorder.MAX_DUMPS + 5; i++ ) {
+      final Path old = Files.write(directory.resolve("threst-1-" + i + ".trace"), new byte[0]);
+      Files.setLastModifiedTime(old, FileTime.fromMillis(past + i));
+    }
+    TraceRecorder trace = new TraceRecorder(1, 4);
+    trace.reset();
+    final Path latest = trace.dump(directory);
+    try ( Stream<Path> files = Files.list(directory) ) {
+      assertThat(files.count(), is((long) TraceRecorder.MAX_DUMPS));
+    }
+    assertThat(Files.exists(latest), is(true));
+    assertThat(Files.exists(directory.resolve("threst-1-5.trace")), is(false));
+    assertThat(Files.exists(directory.resolve("threst-1-6.trace")), is(true));
+  }
+
+  @Test
+  public void testNoTrace() {
+    AssertionError e = assertThrows(AssertionError.class, () -> threads(
+        thread().exec(() -> {
+          throw new IllegalStateException();
+        }))
+        .trace(0)
+        .traceDirectory(directory)
+        .assertSuccess());
+    assertThat(e.getMessage(), not(containsString(TRACE)));
+  }
+
+  @Test
+  public void testNotATrace() throws IOException {
+    final Path file = Files.write(directory.resolve("empty.trace"), new byte[32]);
+    assertThrows(IOException.class, () -> TraceReader.render(file));
+  }
+
+  private static Path traceOf(AssertionError e) {
+    final String message = e.getMessage();
+    assertThat(message, containsString(TRACE));
+    final int start = message.indexOf(TRACE) + TRACE.length();
+    final int end = message.indexOf('\n', start);
+    return Paths.get(message.substring(start, ( end < 0 ) ? message.length() : end));
+  }
+
+  private static void synchronizeBoth(TestRun.TestThread t, Object first, Object second) {
+    synchronized ( first ) {
+      t.waitFor(1);
+      synchronized ( second ) {
+        t.waitFor(2);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.avidj.threst;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.avidj.threst.ConcurrentTest.thread;
+import static org.avidj.threst.ConcurrentTest.threads;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.avidj.threst.TestRun.TestThread;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadTest {
+  private static final int SESSIONS = 10000;
+
+  @Test
+  public void testManySessionsWaitForTicks() {
+    final AtomicInteger arrived = new AtomicInteger();
+    final AtomicInteger departed = new AtomicInteger();
+    TestThread[] more = new TestThread[SESSIONS - 1];
+    for ( int i = 0; i < more.length; i++ ) {
+      more[i] = session(arrived, departed);
+    }
+    threads(session(arrived, departed), more)
+        .virtualThreads()
+        .repeat(3)
+        .assertSuccess();
+    assertThat(departed.get(), is(3 * SESSIONS));
+  }
+
+  // all sessions must have arrived before any of them may depart
+  private static TestThread session(AtomicInteger arrived, AtomicInteger departed) {
+    return thread().exec((t) -> {
+      arrived.incrementAndGet();
+      t.waitFor(1);
+      assertThat(arrived.get() % SESSIONS, is(0));
+      departed.incrementAndGet();
+    });
+  }
+}
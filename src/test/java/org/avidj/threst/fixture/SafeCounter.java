@@ -0,0 +1,50 @@
+package org.avidj.threst.fixture;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * A counter incremented under a monitor and a lock.
+ */
+public class SafeCounter implements Runnable, IntSupplier {
+  private final Lock lock = new ReentrantLock();
+  private volatile int value;
+
+  @Override
+  public void run() {
+    lock.lock();
+    try {
+      synchronized ( this ) {
+        value = value + 1;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    return value;
+  }
+}
@@ -0,0 +1,41 @@
+package org.avidj.threst.fixture;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.function.IntSupplier;
+
+/**
+ * A counter whose increments are not atomic, read and write of the value may interleave with
+ * those of other threads.
+ */
+public class UnsafeCounter implements Runnable, IntSupplier {
+  private volatile int value;
+
+  @Override
+  public void run() {
+    value = value + 1;
+  }
+
+  @Override
+  public int getAsInt() {
+    return value;
+  }
+}
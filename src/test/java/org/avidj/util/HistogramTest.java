@@ -0,0 +1,79 @@
+package org.avidj.util;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void testBucketsAreContiguous() {
+    for ( long value = 0; value < 100000; value++ ) {
+      final int bucket = Histogram.bucket(value);
+      assertThat(Histogram.upperBound(bucket), greaterThanOrEqualTo(value));
+      if ( bucket > 0 ) {
+        assertThat(Histogram.upperBound(bucket - 1), is(lessThanOrEqualTo(value - 1)));
+      }
+    }
+    assertThat(Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+    for ( long value = 1; value <= 1000; value++ ) {
+      histogram.record(value);
+    }
+    assertThat(histogram.count(), is(1000L));
+    assertThat(histogram.max(), is(1000L));
+    assertThat(histogram.mean(), is(500.5));
+    assertThat(histogram.percentile(0.5), is(allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(563L))));
+    assertThat(histogram.percentile(0.99), is(allOf(greaterThanOrEqualTo(990L), lessThanOrEqualTo(1000L))));
+    assertThat(histogram.percentile(1), is(1000L));
+    histogram.reset();
+    assertThat(histogram.count(), is(0L));
+    assertThat(histogram.percentile(0.5), is(0L));
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentile(1.5));
+  }
+
+  @Test
+  public void testAdd() {
+    Histogram odd = new Histogram();
+    Histogram even = new Histogram();
+    for ( long value = 1; value <= 1000; value++ ) {
+      ( ( value % 2 == 0 ) ? even : odd ).record(value);
+    }
+    Histogram all = new Histogram();
+    all.add(odd);
+    all.add(even);
+    assertThat(all.count(), is(1000L));
+    assertThat(all.max(), is(1000L));
+    assertThat(all.mean(), is(500.5));
+    assertThat(all.percentile(0.99), is(allOf(greaterThanOrEqualTo(990L), lessThanOrEqualTo(1000L))));
+  }
+}
@@ -0,0 +1,61 @@
+package org.avidj.util;
+
+/*
+ * #%L
+ * threst
+ * %%
+ * Copyright (C) 2015 David Kensche
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+public class LongHashSetTest {
+
+  @Test
+  public void testAgreesWithHashSet() {
+    final SplittableRandom random = new SplittableRandom(1);
+    final LongHashSet set = new LongHashSet(2);
+    final Set<Long> expected = new HashSet<>();
+    for ( int i = 0; i < 100000; i++ ) {
+      // small values collide often, including the value used to mark free slots
+      final long value = ( i % 2 == 0 ) ? random.nextLong(1000) : random.nextLong();
+      assertThat(set.add(value), is(expected.add(value)));
+    }
+    assertThat(set.size(), is(expected.size()));
+    for ( long value : expected ) {
+      assertThat(set.contains(value), is(true));
+    }
+    assertThat(set.contains(1000), is(expected.contains(1000L)));
+  }
+
+  @Test
+  public void testClear() {
+    final LongHashSet set = new LongHashSet();
+    set.add(0);
+    set.add(42);
+    set.clear();
+    assertThat(set.size(), is(0));
+    assertThat(set.contains(0), is(false));
+    assertThat(set.add(42), is(true));
+  }
+}